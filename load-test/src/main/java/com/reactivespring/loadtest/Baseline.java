@@ -0,0 +1,79 @@
+package com.reactivespring.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// 부하 테스트 결과를 baselines/<name>.json 으로 저장하고, 저장된 결과와 비교한다
+@Data
+@Slf4j
+@NoArgsConstructor
+@AllArgsConstructor
+public class Baseline {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    private String name;
+    private String createdAt;
+    private String gitRevision;
+    private double rate;
+    private String duration;
+    private int movies;
+    private int reviewsPerMovie;
+    private List<ScenarioResult> results;
+
+    public void save(Path baselineDir) throws IOException {
+        Files.createDirectories(baselineDir);
+        var file = baselineDir.resolve(name + ".json");
+        OBJECT_MAPPER.writeValue(file.toFile(), this);
+        log.info("baseline saved : {}", file);
+    }
+
+    public static Baseline load(Path baselineDir, String name) throws IOException {
+        var file = baselineDir.resolve(name + ".json");
+        if (!Files.exists(file)) {
+            throw new IllegalArgumentException("baseline not found : " + file);
+        }
+        return OBJECT_MAPPER.readValue(file.toFile(), Baseline.class);
+    }
+
+    // 시나리오별 p50 / p99 / 처리량 변화 (+ 는 느려짐, 처리량은 + 가 좋아짐)
+    public String compare(List<ScenarioResult> current) {
+        var before = results.stream()
+                .collect(Collectors.toMap(ScenarioResult::getScenario, Function.identity()));
+        if (rate != current.stream().mapToDouble(ScenarioResult::getTargetRps).max().orElse(rate)) {
+            log.warn("baseline {} was recorded at {} rps, results may not be comparable", name, rate);
+        }
+
+        var report = new StringBuilder(String.format("%ncompared to baseline '%s' (%s, %s)%n", name, createdAt, gitRevision));
+        report.append(String.format("%-12s %22s %22s %22s%n", "scenario", "p50 ms", "p99 ms", "achieved rps"));
+        for (var result : current) {
+            var baseline = before.get(result.getScenario());
+            if (baseline == null) {
+                report.append(String.format("%-12s (not in baseline)%n", result.getScenario()));
+                continue;
+            }
+            report.append(String.format("%-12s %22s %22s %22s%n", result.getScenario(),
+                    delta(baseline.getP50Ms(), result.getP50Ms()),
+                    delta(baseline.getP99Ms(), result.getP99Ms()),
+                    delta(baseline.getAchievedRps(), result.getAchievedRps())));
+        }
+        return report.toString();
+    }
+
+    private static String delta(double before, double after) {
+        var percent = before == 0 ? 0 : (after - before) / before * 100;
+        return String.format("%.2f -> %.2f (%+.1f%%)", before, after, percent);
+    }
+}
@@ -0,0 +1,54 @@
+package com.reactivespring.loadtest;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+// 서비스 테스트에서 쓰는 flapdoodle embedded mongo 를 별도 프로세스로 띄운다
+@Slf4j
+public class EmbeddedMongo implements AutoCloseable {
+
+    private final MongodExecutable executable;
+    private final int port;
+
+    private EmbeddedMongo(MongodExecutable executable, int port) {
+        this.executable = executable;
+        this.port = port;
+    }
+
+    public static EmbeddedMongo start(String version) throws IOException {
+        var port = freePort();
+        var config = MongodConfig.builder()
+                .version(Version.Main.valueOf(version))
+                .net(new Net("localhost", port, Network.localhostIsIPv6()))
+                .build();
+
+        var executable = MongodStarter.getDefaultInstance().prepare(config);
+        executable.start();
+        log.info("embedded mongo {} started on port {}", version, port);
+        return new EmbeddedMongo(executable, port);
+    }
+
+    // OS 가 비어있는 port 를 골라주게 한다
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        executable.stop();
+    }
+}
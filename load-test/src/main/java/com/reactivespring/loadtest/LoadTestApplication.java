@@ -0,0 +1,157 @@
+package com.reactivespring.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// embedded mongo + movies-info-service + movies-review-service + movies-service 를 띄우고
+// 시나리오별로 open-model 부하를 걸어 latency percentile / 처리량을 출력한다
+// loadtest.saveBaseline=<name> 이면 결과를 baselines/<name>.json 으로 저장하고, loadtest.compareTo=<name> 이면 비교한다
+@Slf4j
+public class LoadTestApplication {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int SEED_CONCURRENCY = 32;
+
+    public static void main(String[] args) throws Exception {
+        var config = LoadTestConfig.fromSystemProperties();
+
+        try (var mongo = EmbeddedMongo.start(config.getMongoVersion());
+             var moviesInfo = ServiceProcess.start("movies-info-service", config.getMoviesInfoJar(), config.getServiceJvmArgs(),
+                     mongoArgs(mongo), config.getLogDir());
+             var reviews = ServiceProcess.start("movies-review-service", config.getReviewsJar(), config.getServiceJvmArgs(),
+                     mongoArgs(mongo), config.getLogDir())) {
+
+            moviesInfo.awaitReady("/v1/movieinfos?size=1", config.getStartupTimeout());
+            reviews.awaitReady("/v1/reviews?size=1", config.getStartupTimeout());
+
+            try (var movies = ServiceProcess.start("movies-service", config.getMoviesJar(), config.getServiceJvmArgs(),
+                    List.of("--restClient.moviesInfoUrl=" + moviesInfo.baseUrl() + "/v1/movieinfos",
+                            "--restClient.reviewsUrl=" + reviews.baseUrl() + "/v1/reviews"),
+                    config.getLogDir());
+                 var generator = new OpenModelLoadGenerator(config.getMaxConnections(), config.getRequestTimeout())) {
+
+                movies.awaitReady("/actuator/health", config.getStartupTimeout());
+                seed(config, moviesInfo, reviews);
+
+                var results = new ArrayList<ScenarioResult>();
+                for (var name : config.getScenarios()) {
+                    var scenario = scenario(name, config, movies, moviesInfo, reviews);
+                    if (!config.getWarmup().isZero()) {
+                        generator.run(scenario, config.getRate(), config.getWarmup());
+                    }
+                    results.add(generator.run(scenario, config.getRate(), config.getDuration()));
+                }
+
+                report(results);
+                if (config.getCompareTo() != null) {
+                    log.info(Baseline.load(config.getBaselineDir(), config.getCompareTo()).compare(results));
+                }
+                if (config.getSaveBaseline() != null) {
+                    new Baseline(config.getSaveBaseline(), OffsetDateTime.now().toString(), gitRevision(),
+                            config.getRate(), config.getDuration().toString(), config.getMovies(), config.getReviewsPerMovie(),
+                            results)
+                            .save(config.getBaselineDir());
+                }
+            }
+        }
+    }
+
+    private static List<String> mongoArgs(EmbeddedMongo mongo) {
+        return List.of(
+                "--spring.data.mongodb.host=localhost",
+                "--spring.data.mongodb.port=" + mongo.getPort(),
+                "--spring.data.mongodb.database=loadtest");
+    }
+
+    // movieInfoId 는 1 ~ movies (movies-service 가 같은 id 로 review 를 조회하므로 숫자 id 를 쓴다)
+    private static Scenario scenario(String name, LoadTestConfig config, ServiceProcess movies,
+                                     ServiceProcess moviesInfo, ServiceProcess reviews) {
+        switch (name) {
+            case "movies":
+                return new Scenario(name, n -> movies.baseUrl() + "/v1/movies/" + movieId(n, config));
+            case "movieinfos":
+                return new Scenario(name, n -> moviesInfo.baseUrl() + "/v1/movieinfos?size=50");
+            case "reviews":
+                return new Scenario(name, n -> reviews.baseUrl() + "/v1/reviews?movieInfoId=" + movieId(n, config));
+            default:
+                throw new IllegalArgumentException("unknown scenario : " + name + " (movies, movieinfos, reviews)");
+        }
+    }
+
+    // 요청 순서와 상관없이 movie 들에 고르게 퍼지도록 (난수 대신 고정된 순서)
+    private static long movieId(long n, LoadTestConfig config) {
+        return (n * 7919) % config.getMovies() + 1;
+    }
+
+    private static void seed(LoadTestConfig config, ServiceProcess moviesInfo, ServiceProcess reviews) {
+        var client = HttpClient.create();
+        log.info("seeding {} movies x {} reviews", config.getMovies(), config.getReviewsPerMovie());
+
+        Flux.range(1, config.getMovies())
+                .flatMap(id -> post(client, moviesInfo.baseUrl() + "/v1/movieinfos", Map.of(
+                        "movieInfoId", String.valueOf(id),
+                        "name", "Movie " + id,
+                        "year", 2000 + id % 20,
+                        "cast", List.of("Actor " + id),
+                        "release_date", "2005-06-15")), SEED_CONCURRENCY)
+                .blockLast();
+
+        Flux.range(1, config.getMovies())
+                .flatMap(id -> Flux.range(0, config.getReviewsPerMovie())
+                        .map(n -> Map.<String, Object>of(
+                                "movieInfoId", id,
+                                "comment", "Review " + n + " of movie " + id,
+                                "rating", (double) (n % 10))))
+                .flatMap(review -> post(client, reviews.baseUrl() + "/v1/reviews", review), SEED_CONCURRENCY)
+                .blockLast();
+    }
+
+    private static Mono<Integer> post(HttpClient client, String url, Map<String, Object> body) {
+        return Mono.fromCallable(() -> OBJECT_MAPPER.writeValueAsString(body))
+                .flatMap(json -> client.headers(headers -> headers.set("Content-Type", "application/json"))
+                        .post()
+                        .uri(url)
+                        .send(ByteBufFlux.fromString(Mono.just(json)))
+                        .responseSingle((response, content) -> content.asString()
+                                .defaultIfEmpty("")
+                                .flatMap(text -> response.status().code() >= 300
+                                        ? Mono.error(new IllegalStateException("seed failed " + url + " : " + response.status() + " " + text))
+                                        : Mono.just(response.status().code()))));
+    }
+
+    private static void report(List<ScenarioResult> results) {
+        var table = new StringBuilder(String.format("%n%-12s %10s %10s %9s %7s %9s %9s %9s %9s %9s%n",
+                "scenario", "target/s", "actual/s", "requests", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (var result : results) {
+            table.append(String.format("%-12s %10.1f %10.1f %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    result.getScenario(), result.getTargetRps(), result.getAchievedRps(), result.getRequests(), result.getErrors(),
+                    result.getP50Ms(), result.getP90Ms(), result.getP99Ms(), result.getP999Ms(), result.getMaxMs()));
+        }
+        log.info(table.toString());
+    }
+
+    private static String gitRevision() {
+        try {
+            var process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD")
+                    .redirectErrorStream(true)
+                    .start();
+            try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                var revision = reader.readLine();
+                return process.waitFor() == 0 ? revision : "unknown";
+            }
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.reactivespring.loadtest;
+
+import lombok.Data;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// loadtest.* system property 로 설정한다 (gradle 에서는 -Ploadtest.rate=200 처럼 넘긴다)
+@Data
+public class LoadTestConfig {
+
+    // 시나리오마다 초당 요청 수 (open model : 응답을 기다리지 않고 정해진 간격으로 요청을 보낸다)
+    private double rate = 100;
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration duration = Duration.ofSeconds(30);
+    private List<String> scenarios = List.of("movies", "movieinfos", "reviews");
+
+    // seed 데이터
+    private int movies = 100;
+    private int reviewsPerMovie = 20;
+
+    private int maxConnections = 500;
+    private Duration requestTimeout = Duration.ofSeconds(30);
+    private Duration startupTimeout = Duration.ofMinutes(2);
+
+    private String mongoVersion = "V4_0";
+    private List<String> serviceJvmArgs = List.of("-Xmx512m");
+
+    private Path moviesInfoJar;
+    private Path reviewsJar;
+    private Path moviesJar;
+
+    private Path baselineDir = Path.of("baselines");
+    private Path logDir = Path.of("build", "load-test");
+    private String saveBaseline;
+    private String compareTo;
+
+    public static LoadTestConfig fromSystemProperties() {
+        var config = new LoadTestConfig();
+        config.setRate(Double.parseDouble(property("rate", String.valueOf(config.getRate()))));
+        config.setWarmup(parseDuration(property("warmup", "10s")));
+        config.setDuration(parseDuration(property("duration", "30s")));
+        config.setScenarios(parseList(property("scenarios", String.join(",", config.getScenarios()))));
+        config.setMovies(Integer.parseInt(property("movies", String.valueOf(config.getMovies()))));
+        config.setReviewsPerMovie(Integer.parseInt(property("reviewsPerMovie", String.valueOf(config.getReviewsPerMovie()))));
+        config.setMaxConnections(Integer.parseInt(property("maxConnections", String.valueOf(config.getMaxConnections()))));
+        config.setRequestTimeout(parseDuration(property("requestTimeout", "30s")));
+        config.setStartupTimeout(parseDuration(property("startupTimeout", "2m")));
+        config.setMongoVersion(property("mongoVersion", config.getMongoVersion()));
+        config.setServiceJvmArgs(Arrays.asList(property("serviceJvmArgs", "-Xmx512m").trim().split("\\s+")));
+        config.setMoviesInfoJar(requiredPath("moviesInfoJar"));
+        config.setReviewsJar(requiredPath("reviewsJar"));
+        config.setMoviesJar(requiredPath("moviesJar"));
+        config.setBaselineDir(Path.of(property("baselineDir", config.getBaselineDir().toString())));
+        config.setLogDir(Path.of(property("logDir", config.getLogDir().toString())));
+        config.setSaveBaseline(System.getProperty("loadtest.saveBaseline"));
+        config.setCompareTo(System.getProperty("loadtest.compareTo"));
+
+        if (config.getRate() <= 0) {
+            throw new IllegalArgumentException("loadtest.rate must be positive");
+        }
+        return config;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+
+    private static Path requiredPath(String name) {
+        var value = System.getProperty("loadtest." + name);
+        if (value == null) {
+            throw new IllegalArgumentException("loadtest." + name + " is required (run with ./gradlew :load-test:loadTest)");
+        }
+        return Path.of(value);
+    }
+
+    private static List<String> parseList(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    // 10s, 500ms, 2m 또는 ISO-8601 (PT10S)
+    static Duration parseDuration(String value) {
+        var v = value.trim();
+        if (v.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        }
+        if (v.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        if (v.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        return Duration.parse(v);
+    }
+}
@@ -0,0 +1,84 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// open model 부하 생성기
+// 응답을 기다리지 않고 rate 에 맞춘 예정 시각마다 요청을 보내고,
+// latency 는 실제 전송 시각이 아니라 예정 시각부터 잰다 (서버가 느려져 요청이 밀려도 그 대기 시간이 결과에 포함된다)
+@Slf4j
+public class OpenModelLoadGenerator implements AutoCloseable {
+
+    private final ConnectionProvider connectionProvider;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    public OpenModelLoadGenerator(int maxConnections, Duration requestTimeout) {
+        this.connectionProvider = ConnectionProvider.builder("load-test")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.httpClient = HttpClient.create(connectionProvider);
+        this.requestTimeout = requestTimeout;
+    }
+
+    public ScenarioResult run(Scenario scenario, double rate, Duration duration) throws InterruptedException {
+        var total = (long) Math.ceil(rate * duration.toNanos() / (double) TimeUnit.SECONDS.toNanos(1));
+        var intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        // μs 단위, timeout 의 2배까지 기록
+        var histogram = new ConcurrentHistogram(requestTimeout.multipliedBy(2).toNanos() / 1000, 3);
+        var errors = new LongAdder();
+        var done = new CountDownLatch((int) total);
+
+        log.info("{} : {} requests at {} rps", scenario.getName(), total, rate);
+        var start = System.nanoTime();
+        for (long n = 0; n < total; n++) {
+            var intendedStart = start + n * intervalNanos;
+            long now;
+            while ((now = System.nanoTime()) < intendedStart) {
+                LockSupport.parkNanos(intendedStart - now);
+            }
+
+            request(scenario.url(n))
+                    .doOnNext(status -> {
+                        if (status >= 400) {
+                            errors.increment();
+                        }
+                    })
+                    .doOnError(ex -> errors.increment())
+                    .doFinally(signal -> {
+                        var latencyMicros = (System.nanoTime() - intendedStart) / 1000;
+                        histogram.recordValue(Math.min(latencyMicros, histogram.getHighestTrackableValue()));
+                        done.countDown();
+                    })
+                    .subscribe(status -> { }, ex -> { });
+        }
+
+        if (!done.await(requestTimeout.toMillis() + 10_000, TimeUnit.MILLISECONDS)) {
+            log.warn("{} : {} requests did not complete", scenario.getName(), done.getCount());
+        }
+        var elapsed = System.nanoTime() - start;
+        return ScenarioResult.of(scenario.getName(), rate, total, errors.sum(), elapsed, histogram);
+    }
+
+    private Mono<Integer> request(String url) {
+        return httpClient.get()
+                .uri(url)
+                .responseSingle((response, body) -> body.then().thenReturn(response.status().code()))
+                .timeout(requestTimeout);
+    }
+
+    @Override
+    public void close() {
+        connectionProvider.dispose();
+    }
+}
@@ -0,0 +1,19 @@
+package com.reactivespring.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.function.LongFunction;
+
+// 부하를 걸 endpoint. n 번째 요청의 url 을 만든다 (같은 설정이면 항상 같은 순서로 요청한다)
+@Getter
+@AllArgsConstructor
+public class Scenario {
+
+    private final String name;
+    private final LongFunction<String> url;
+
+    public String url(long n) {
+        return url.apply(n);
+    }
+}
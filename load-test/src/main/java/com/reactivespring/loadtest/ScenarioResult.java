@@ -0,0 +1,68 @@
+package com.reactivespring.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+// 시나리오 한 번의 결과. latency 는 ms, histogram 은 원본(μs)을 압축해서 같이 저장한다 (나중에 다른 percentile 을 다시 계산할 수 있도록)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScenarioResult {
+
+    private String scenario;
+    private double targetRps;
+    private double achievedRps;
+    private long requests;
+    private long errors;
+    private double meanMs;
+    private double p50Ms;
+    private double p90Ms;
+    private double p99Ms;
+    private double p999Ms;
+    private double maxMs;
+    private String histogram;
+
+    public static ScenarioResult of(String scenario, double targetRps, long requests, long errors,
+                                    long elapsedNanos, Histogram histogram) {
+        return new ScenarioResult(
+                scenario,
+                targetRps,
+                requests / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)),
+                requests,
+                errors,
+                toMillis(histogram.getMean()),
+                toMillis(histogram.getValueAtPercentile(50)),
+                toMillis(histogram.getValueAtPercentile(90)),
+                toMillis(histogram.getValueAtPercentile(99)),
+                toMillis(histogram.getValueAtPercentile(99.9)),
+                toMillis(histogram.getMaxValue()),
+                encode(histogram));
+    }
+
+    public Histogram decodeHistogram() {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(histogram)), 0);
+        } catch (java.util.zip.DataFormatException e) {
+            throw new IllegalStateException("invalid histogram in result " + scenario, e);
+        }
+    }
+
+    private static double toMillis(double micros) {
+        return micros / 1000.0;
+    }
+
+    private static String encode(Histogram histogram) {
+        var buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        var length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        var bytes = new byte[length];
+        buffer.flip();
+        buffer.get(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,96 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// bootJar 를 별도 JVM 으로 실행한다
+// (세 서비스가 같은 패키지에 같은 이름의 클래스를 갖고 있어서 한 JVM 에 올릴 수 없다)
+@Slf4j
+public class ServiceProcess implements AutoCloseable {
+
+    private final String name;
+    private final Process process;
+    private final int port;
+    private final Path logFile;
+
+    private ServiceProcess(String name, Process process, int port, Path logFile) {
+        this.name = name;
+        this.process = process;
+        this.port = port;
+        this.logFile = logFile;
+    }
+
+    public static ServiceProcess start(String name, Path jar, List<String> jvmArgs, List<String> appArgs,
+                                       Path logDir) throws IOException {
+        var port = freePort();
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+
+        Files.createDirectories(logDir);
+        var logFile = logDir.resolve(name + ".log");
+        var process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        log.info("{} starting on port {} (log : {})", name, port, logFile);
+        return new ServiceProcess(name, process, port, logFile);
+    }
+
+    // readyPath 가 2xx 를 돌려줄 때까지 기다린다
+    public void awaitReady(String readyPath, Duration timeout) throws InterruptedException {
+        var client = HttpClient.create().responseTimeout(Duration.ofSeconds(2));
+        var deadline = System.nanoTime() + timeout.toNanos();
+
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException(name + " exited with " + process.exitValue() + ", see " + logFile);
+            }
+            var status = client.get()
+                    .uri(baseUrl() + readyPath)
+                    .responseSingle((response, body) -> body.then().thenReturn(response.status().code()))
+                    .onErrorReturn(-1)
+                    .block();
+            if (status != null && status >= 200 && status < 300) {
+                log.info("{} is ready", name);
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+        throw new IllegalStateException(name + " did not become ready in " + timeout + ", see " + logFile);
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+
+    private static int freePort() {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.reactivespring.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+// @Document 클래스에 선언된 인덱스(@Indexed, @CompoundIndex)를 기동 시점에 생성
+// (auto-index-creation 은 비동기로 생성되어 완료 시점을 알 수 없으므로, 생성이 끝날 때까지 기다린다)
+@Slf4j
+@Component
+public class MongoIndexInitializer {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MongoIndexInitializer(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        var mappingContext = reactiveMongoTemplate.getConverter().getMappingContext();
+        var indexResolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+        Flux.fromIterable(mappingContext.getPersistentEntities())
+                .filter(entity -> entity.isAnnotationPresent(Document.class))
+                .concatMap(entity -> Flux.fromIterable(indexResolver.resolveIndexFor(entity.getType()))
+                        .concatMap(index -> reactiveMongoTemplate.indexOps(entity.getType()).ensureIndex(index))
+                        .doOnNext(indexName -> log.info("Ensured index {} on {}", indexName, entity.getCollection())))
+                .blockLast();
+    }
+}
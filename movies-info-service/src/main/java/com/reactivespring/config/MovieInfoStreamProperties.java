@@ -0,0 +1,44 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "movieinfos.stream")
+public class MovieInfoStreamProperties {
+
+    public enum Source {
+        // 이 노드에서 저장된 movieInfo 만 (replica 가 하나일 때)
+        LOCAL,
+        // Mongo change stream (replica set 필요). 모든 replica 의 저장을 받고, resume token 으로 이어받을 수 있다
+        CHANGE_STREAM
+    }
+
+    public enum OverflowPolicy {
+        // 가장 오래된 항목을 버린다
+        DROP_OLDEST,
+        // 같은 movieInfoId 는 최신 값으로 덮어쓰고, 그래도 가득 차면 가장 오래된 항목을 버린다
+        CONFLATE,
+        // 구독을 끊는다 (client 는 재연결해서 최신 값부터 다시 받는다)
+        DISCONNECT
+    }
+
+    private Source source = Source.LOCAL;
+
+    // change stream 이 끊기면 마지막 resume token 부터 다시 연결한다 (최대 backoff)
+    private Duration changeStreamMaxBackoff = Duration.ofSeconds(30);
+
+    // 구독자마다 아직 못 보낸 항목을 최대 몇 개까지 쌓아둘지
+    private int bufferSize = 256;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.CONFLATE;
+
+    // resume token 이 최근 publish 된 이 개수 안에 있으면 change stream 을 열지 않고 바로 이어준다
+    private int resumeWindowSize = 1024;
+    // 그보다 오래된 token 으로 이어받는 중인 (change stream cursor 를 연) 구독자 수 제한. 넘으면 503
+    private int maxResumeCursors = 100;
+
+    // 이 시간 동안 보낸 항목이 없으면 heartbeat({}) 를 보낸다 (idle connection 이 proxy 에서 끊기지 않도록)
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+}
@@ -0,0 +1,39 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.HttpResources;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// reactor netty 서버 / event loop 지표
+@Configuration
+public class NettyMetricsConfig {
+
+    // reactor.netty.http.server.* (connection, data sent/received ...)
+    // route 별 latency 는 http.server.requests 로 보므로 uri 는 tag 로 쓰지 않는다 (cardinality)
+    @Bean
+    public NettyServerCustomizer nettyServerMetricsCustomizer() {
+        return httpServer -> httpServer.metrics(true, uri -> "/");
+    }
+
+    // event loop 마다 처리 대기 중인 작업 수. 계속 쌓이면 event loop 가 막히고 있다는 뜻 (blocking 호출 등)
+    @Bean
+    public MeterBinder nettyEventLoopMetrics() {
+        return registry -> {
+            var index = new AtomicInteger();
+            HttpResources.get().onServer(true).forEach(executor -> {
+                if (executor instanceof SingleThreadEventExecutor) {
+                    Gauge.builder("netty.eventloop.pending.tasks", (SingleThreadEventExecutor) executor,
+                                    SingleThreadEventExecutor::pendingTasks)
+                            .tag("eventloop", String.valueOf(index.getAndIncrement()))
+                            .register(registry);
+                }
+            });
+        };
+    }
+}
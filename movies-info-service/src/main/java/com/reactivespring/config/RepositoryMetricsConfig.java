@@ -0,0 +1,30 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+// 모든 repository 호출에 RepositoryMetricsInterceptor 를 건다
+// (spring data 기본 repository metrics 는 Mono / Flux 를 만드는 시간만 재므로 application.yml 에서 끈다)
+@Configuration
+public class RepositoryMetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor repositoryMetricsBeanPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport) {
+                    ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                            factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+                                    proxyFactory.addAdvice(new RepositoryMetricsInterceptor(meterRegistry.getObject(),
+                                            repositoryInformation.getRepositoryInterface()))));
+                }
+                return bean;
+            }
+        };
+    }
+}
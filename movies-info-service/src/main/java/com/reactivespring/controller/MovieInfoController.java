@@ -1,37 +1,109 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.config.MovieInfoStreamProperties;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoStreamEvent;
+import com.reactivespring.domain.MovieInfoStreamFilter;
+import com.reactivespring.service.MovieInfoChangeStream;
+import com.reactivespring.service.MovieInfoStreamHub;
 import com.reactivespring.service.MoviesInfoService;
+import com.reactivespring.util.ReactiveTrace;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.function.Function;
 
 @Slf4j
 @RestController
 @RequestMapping("/v1")
 public class MovieInfoController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final MoviesInfoService moviesInfoService;
-    Sinks.Many<MovieInfo> movieInfoSink = Sinks.many().replay().latest();
+    private final MovieInfoStreamHub movieInfoStreamHub;
+    private final MovieInfoChangeStream movieInfoChangeStream;
+    private final MovieInfoStreamProperties streamProperties;
+
+    @Value("${movieinfos.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${movieinfos.page.max-size:1000}")
+    private int maxPageSize;
 
-    public MovieInfoController(MoviesInfoService moviesInfoService) {
+    public MovieInfoController(MoviesInfoService moviesInfoService, MovieInfoStreamHub movieInfoStreamHub,
+                               MovieInfoChangeStream movieInfoChangeStream, MovieInfoStreamProperties streamProperties) {
         this.moviesInfoService = moviesInfoService;
+        this.movieInfoStreamHub = movieInfoStreamHub;
+        this.movieInfoChangeStream = movieInfoChangeStream;
+        this.streamProperties = streamProperties;
     }
 
     @GetMapping("/movieinfos")
-    public Flux<MovieInfo> getAllMovieInfos(@RequestParam(value = "year", required = false) Integer year) {
-        log.info("Year is {}", year);
-        if (year != null)
-            return moviesInfoService.getMovieInfoByYear(year);
+    public Flux<MovieInfo> getAllMovieInfos(@RequestParam(value = "year", required = false) Integer year,
+                                            @RequestParam(value = "ids", required = false) List<String> ids,
+                                            @RequestParam(value = "after", required = false) String after,
+                                            @RequestParam(value = "size", required = false) Integer size,
+                                            @RequestParam(value = "fields", required = false) List<String> fields,
+                                            ServerHttpResponse response) {
+        return findMovieInfos(year, ids, after, size, fields, response)
+                .transformDeferredContextual(ReactiveTrace.flux("GET /v1/movieinfos", ids != null ? ids : year));
+    }
+
+    private Flux<MovieInfo> findMovieInfos(Integer year, List<String> ids, String after, Integer size,
+                                           List<String> fields, ServerHttpResponse response) {
+        if (ids != null && !ids.isEmpty())
+            return moviesInfoService.getMovieInfosByIds(ids, fields);
+        else if (year != null)
+            return moviesInfoService.getMovieInfoByYear(year, fields);
         else
-            return moviesInfoService.getAllMovieInfos().log();
+            return getMovieInfosPage(after, size, fields, response);
+    }
+
+    // 전체 조회는 movieInfoId 기준 keyset pagination (size 는 movieinfos.page.max-size 로 제한)
+    // 다음 페이지가 있으면 마지막 movieInfoId 를 X-Next-Cursor 헤더로 내려준다
+    private Flux<MovieInfo> getMovieInfosPage(String after, Integer size, List<String> fields, ServerHttpResponse response) {
+        if (size != null && size <= 0) {
+            return Flux.error(new ServerWebInputException("size must be a positive number"));
+        }
+        var pageSize = size == null ? defaultPageSize : Math.min(size, maxPageSize);
+
+        // 다음 페이지 존재 여부를 알기 위해 한 건 더 조회
+        return moviesInfoService.getMovieInfos(after, pageSize + 1, fields)
+                .collectList()
+                .flatMapMany(movieInfos -> {
+                    if (movieInfos.size() > pageSize) {
+                        movieInfos = movieInfos.subList(0, pageSize);
+                        response.getHeaders().add(NEXT_CURSOR_HEADER, movieInfos.get(pageSize - 1).getMovieInfoId());
+                    }
+                    return Flux.fromIterable(movieInfos);
+                });
+    }
+
+    // Accept: application/x-ndjson 요청은 페이지 없이 전체를 client 의 demand 만큼씩 stream 으로 내려준다
+    // ids / year / fields 는 JSON 목록 조회(getAllMovieInfos)와 같은 의미다
+    @GetMapping(value = "/movieinfos", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfo> streamAllMovieInfos(@RequestParam(value = "year", required = false) Integer year,
+                                               @RequestParam(value = "ids", required = false) List<String> ids,
+                                               @RequestParam(value = "fields", required = false) List<String> fields) {
+        if (ids != null && !ids.isEmpty())
+            return moviesInfoService.getMovieInfosByIds(ids, fields);
+        if (year != null)
+            return moviesInfoService.getMovieInfoByYear(year, fields);
+        return moviesInfoService.getAllMovieInfos(fields);
     }
 
 //    @GetMapping("/movieinfos/{id}")
@@ -44,19 +116,74 @@ public class MovieInfoController {
         return moviesInfoService.getMovieInfo(id)
                 .map(ResponseEntity.ok()::body)
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
-                .log();
+                .transformDeferredContextual(ReactiveTrace.mono("GET /v1/movieinfos/{id}", id));
+    }
+
+    // 저장되는 movieInfo 를 실시간으로 내려준다 (구독 시 마지막으로 저장된 movieInfo 부터)
+    // 느린 client 는 movieinfos.stream.overflow-policy 에 따라 일부를 건너뛰거나 끊기고, idle 중에는 heartbeat 를 받는다
+    // (NDJSON 은 {} 한 줄, SSE 는 comment)
+    // source 가 CHANGE_STREAM 이면 SSE 의 event id 가 resume token 이고, 다시 연결할 때 Last-Event-ID 헤더나
+    // resumeToken 파라미터로 넘기면 그 다음 변경부터 이어서 받는다 (hub 의 위치까지 따라잡으면 다른 구독자와 같이 hub 에서 받는다)
+    // ids / year / cast 를 넘기면 조건에 맞는 movieInfo 만 받는다 (같은 항목은 OR, 항목끼리는 AND)
+    @GetMapping(value = "/movieinfos/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Object> getMovieById(@RequestParam(value = "ids", required = false) List<String> ids,
+                                     @RequestParam(value = "year", required = false) List<Integer> years,
+                                     @RequestParam(value = "cast", required = false) List<String> cast,
+                                     @RequestParam(value = "resumeToken", required = false) String resumeToken,
+                                     @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                     ServerHttpRequest request) {
+        var filter = MovieInfoStreamFilter.of(ids, years, cast);
+        var token = resumeToken != null ? resumeToken : lastEventId;
+        Flux<MovieInfoStreamEvent> events;
+        if (token == null) {
+            events = movieInfoStreamHub.subscribe(filter);
+        } else if (streamProperties.getSource() == MovieInfoStreamProperties.Source.CHANGE_STREAM) {
+            events = movieInfoChangeStream.resume(token, filter);
+        } else {
+            return Flux.error(new ServerWebInputException("resume is only supported when movieinfos.stream.source is CHANGE_STREAM"));
+        }
+
+        var sse = request.getHeaders().getAccept().stream()
+                .anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype);
+        Function<MovieInfoStreamEvent, Object> encoder = sse
+                ? MovieInfoController::toServerSentEvent
+                : MovieInfoController::toMovieInfo;
+        return events.transformDeferredContextual(ReactiveTrace.flux("GET /v1/movieinfos/stream", token))
+                .map(encoder);
+    }
+
+    private static MovieInfo toMovieInfo(MovieInfoStreamEvent event) {
+        // MovieInfo 는 null 필드를 쓰지 않으므로 heartbeat 는 {} 로 나간다
+        return event.getMovieInfo() != null ? event.getMovieInfo() : new MovieInfo();
+    }
+
+    private static ServerSentEvent<MovieInfo> toServerSentEvent(MovieInfoStreamEvent event) {
+        if (event.getMovieInfo() == null) {
+            return ServerSentEvent.<MovieInfo>builder().comment("heartbeat").build();
+        }
+        return ServerSentEvent.builder(event.getMovieInfo())
+                .id(event.getId())
+                .build();
     }
 
-    @GetMapping(value = "/movieinfos/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
-    public Flux<MovieInfo> getMovieById() {
-        return movieInfoSink.asFlux().log();
+    // 생성/수정/삭제 이벤트 change feed (movies-service 의 캐시 무효화에 사용)
+    // source 가 CHANGE_STREAM 이면 모든 replica 의 변경, LOCAL 이면 이 replica 의 변경만 나간다
+    @GetMapping(value = "/movieinfos/events", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfoEvent> getMovieInfoEvents() {
+        return moviesInfoService.getMovieInfoEvents();
     }
 
+    // 동시에 저장된 요청들도 hub 에서 직렬화되어 stream 으로 빠짐없이 전달된다 (emit 결과는 hub 가 metric 으로 센다)
+    // source 가 CHANGE_STREAM 이면 change stream 으로 받으므로 여기서는 publish 하지 않는다
     @PostMapping("/movieinfos")
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<MovieInfo> addMovieInfo(@RequestBody @Valid MovieInfo movieInfo) {
         return moviesInfoService.addMovieInfo(movieInfo)
-                .doOnNext(savedMovieInfo -> movieInfoSink.tryEmitNext(savedMovieInfo));
+                .doOnNext(savedMovieInfo -> {
+                    if (streamProperties.getSource() == MovieInfoStreamProperties.Source.LOCAL) {
+                        movieInfoStreamHub.publish(savedMovieInfo);
+                    }
+                });
     }
 
     @PutMapping("/movieinfos/{id}")
@@ -64,7 +191,7 @@ public class MovieInfoController {
         return moviesInfoService.updateMovieInfo(movieInfo, id)
                 .map(ResponseEntity.ok()::body)
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
-                .log();
+                .transformDeferredContextual(ReactiveTrace.mono("PUT /v1/movieinfos/{id}", id));
     }
 
     @DeleteMapping("/movieinfos/{id}")
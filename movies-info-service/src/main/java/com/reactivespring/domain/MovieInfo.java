@@ -1,9 +1,11 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
@@ -13,14 +15,17 @@ import java.time.LocalDate;
 import java.util.List;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
 public class MovieInfo {
     @Id
     private String movieInfoId;
+    @Indexed
     @NotBlank(message = "movieInfo.name must be present")
     private String name;
+    @Indexed
     @NotNull
     @Positive(message = "movieInfo.year must be positive value")
     private Integer year;
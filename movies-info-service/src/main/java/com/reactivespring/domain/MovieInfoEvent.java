@@ -0,0 +1,32 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// movieInfo 변경 이벤트 (DELETED 이벤트는 movieInfo 가 null)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private Type type;
+    private String movieInfoId;
+    private MovieInfo movieInfo;
+
+    public static MovieInfoEvent created(MovieInfo movieInfo) {
+        return new MovieInfoEvent(Type.CREATED, movieInfo.getMovieInfoId(), movieInfo);
+    }
+
+    public static MovieInfoEvent updated(MovieInfo movieInfo) {
+        return new MovieInfoEvent(Type.UPDATED, movieInfo.getMovieInfoId(), movieInfo);
+    }
+
+    public static MovieInfoEvent deleted(String movieInfoId) {
+        return new MovieInfoEvent(Type.DELETED, movieInfoId, null);
+    }
+}
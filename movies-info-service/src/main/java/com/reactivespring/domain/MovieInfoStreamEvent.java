@@ -0,0 +1,21 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// /v1/movieinfos/stream 으로 나가는 항목
+// id 는 다시 연결할 때 이어받을 위치 (change stream resume token, local 모드는 null)
+// movieInfo 가 null 이면 heartbeat
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoStreamEvent {
+
+    private String id;
+    private MovieInfo movieInfo;
+
+    public static MovieInfoStreamEvent heartbeat() {
+        return new MovieInfoStreamEvent();
+    }
+}
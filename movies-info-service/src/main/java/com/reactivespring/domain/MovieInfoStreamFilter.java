@@ -0,0 +1,50 @@
+package com.reactivespring.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// /v1/movieinfos/stream 구독 filter
+// 같은 항목 안에서는 OR (ids=a,b), 항목끼리는 AND (year=2005&cast=Christian Bale), 비어 있는 항목은 조건 없음
+@Getter
+@EqualsAndHashCode
+@ToString
+public class MovieInfoStreamFilter {
+
+    public static final MovieInfoStreamFilter ALL = new MovieInfoStreamFilter(Set.of(), Set.of(), Set.of());
+
+    private final Set<String> ids;
+    private final Set<Integer> years;
+    private final Set<String> cast;
+
+    private MovieInfoStreamFilter(Set<String> ids, Set<Integer> years, Set<String> cast) {
+        this.ids = ids;
+        this.years = years;
+        this.cast = cast;
+    }
+
+    public static MovieInfoStreamFilter of(Collection<String> ids, Collection<Integer> years, Collection<String> cast) {
+        var filter = new MovieInfoStreamFilter(copy(ids), copy(years), copy(cast));
+        return filter.isEmpty() ? ALL : filter;
+    }
+
+    // null 을 contains 해도 되도록 HashSet 으로 복사한다 (Set.copyOf 는 NPE)
+    private static <T> Set<T> copy(Collection<T> values) {
+        return values == null || values.isEmpty() ? Set.of() : Collections.unmodifiableSet(new HashSet<>(values));
+    }
+
+    public boolean isEmpty() {
+        return ids.isEmpty() && years.isEmpty() && cast.isEmpty();
+    }
+
+    public boolean matches(MovieInfo movieInfo) {
+        return (ids.isEmpty() || ids.contains(movieInfo.getMovieInfoId()))
+                && (years.isEmpty() || years.contains(movieInfo.getYear()))
+                && (cast.isEmpty() || (movieInfo.getCast() != null && movieInfo.getCast().stream().anyMatch(cast::contains)));
+    }
+}
@@ -0,0 +1,50 @@
+package com.reactivespring.filter;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+// movies-service 가 X-Deadline-Ms 헤더로 넘긴 남은 시간 안에 처리하지 못하면 504 로 중단한다
+// controller 가 반환한 repository Flux/Mono 까지 cancel 되므로, 이미 포기한 요청에 대해 Mongo 조회를 계속하지 않는다
+// movies-service 와 마찬가지로 deadline 은 응답이 commit 될 때(header 를 보낼 때)까지만 적용한다
+// (NDJSON/SSE 처럼 이미 쓰기 시작한 body 를 중간에 끊으면 client 는 504 가 아니라 잘린 body 를 받는다)
+@Component
+public class DeadlineWebFilter implements WebFilter {
+
+    public static final String HEADER = "X-Deadline-Ms";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var header = exchange.getRequest().getHeaders().getFirst(HEADER);
+        if (header == null) {
+            return chain.filter(exchange);
+        }
+
+        long millis;
+        try {
+            millis = Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            // 잘못된 값은 무시한다
+            return chain.filter(exchange);
+        }
+        if (millis <= 0) {
+            return Mono.error(deadlineExceeded());
+        }
+
+        // 시간이 다 됐을 때 응답이 이미 commit 되었으면 timeout 을 걸지 않는다
+        var deadline = Mono.delay(Duration.ofMillis(millis))
+                .flatMap(tick -> exchange.getResponse().isCommitted() ? Mono.<Long>never() : Mono.just(tick));
+        return chain.filter(exchange)
+                .timeout(deadline, Mono.error(DeadlineWebFilter::deadlineExceeded));
+    }
+
+    private static ResponseStatusException deadlineExceeded() {
+        return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Request deadline exceeded");
+    }
+}
@@ -0,0 +1,31 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.util.ReactiveTrace;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// diagnostics.trace.enabled 이면 요청의 diagnostics.trace.sample-rate 비율만 ReactiveTrace 대상으로 표시한다 (기본은 꺼짐)
+@Component
+public class TraceSamplingWebFilter implements WebFilter {
+
+    @Value("${diagnostics.trace.enabled:false}")
+    private boolean enabled;
+
+    @Value("${diagnostics.trace.sample-rate:0.01}")
+    private double sampleRate;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange)
+                .contextWrite(ReactiveTrace::sampled);
+    }
+}
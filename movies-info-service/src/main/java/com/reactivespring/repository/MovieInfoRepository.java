@@ -1,11 +1,18 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String> {
+public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String>, MovieInfoRepositoryCustom {
     Flux<MovieInfo> findByYear(Integer year);
     Mono<MovieInfo> findByName(String name);
+    // 삭제된 문서 수 (없는 id 면 0)
+    Mono<Long> deleteByMovieInfoId(String movieInfoId);
+
+    // keyset(cursor) pagination
+    Flux<MovieInfo> findAllBy(Pageable pageable);
+    Flux<MovieInfo> findByMovieInfoIdGreaterThan(String movieInfoId, Pageable pageable);
 }
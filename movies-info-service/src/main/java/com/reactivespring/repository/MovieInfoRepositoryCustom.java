@@ -0,0 +1,12 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+public interface MovieInfoRepositoryCustom {
+
+    Flux<MovieInfo> findProjected(Query query, Collection<String> fields);
+}
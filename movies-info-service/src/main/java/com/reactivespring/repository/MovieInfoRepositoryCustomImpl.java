@@ -0,0 +1,27 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+/**
+ * 요청한 필드만 Mongo 에서 읽어온다 (movieInfoId(_id) 는 항상 포함).
+ * 나머지 필드는 null 로 매핑되고 응답에서는 제외된다.
+ */
+class MovieInfoRepositoryCustomImpl implements MovieInfoRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    MovieInfoRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Flux<MovieInfo> findProjected(Query query, Collection<String> fields) {
+        query.fields().include(fields.toArray(String[]::new));
+        return mongoTemplate.find(query, MovieInfo.class);
+    }
+}
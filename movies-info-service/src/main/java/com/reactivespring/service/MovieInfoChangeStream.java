@@ -0,0 +1,190 @@
+package com.reactivespring.service;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.reactivespring.config.MovieInfoStreamProperties;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoStreamEvent;
+import com.reactivespring.domain.MovieInfoStreamFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * movieInfo 컬렉션의 Mongo change stream 을 /v1/movieinfos/stream 의 source 로 쓴다 (movieinfos.stream.source=CHANGE_STREAM).
+ * replica 마다 하나의 change stream 을 MovieInfoStreamHub 와 MovieInfoEventPublisher(/v1/movieinfos/events) 로 publish 하므로,
+ * 어느 replica 에서 저장/삭제되었든 모든 구독자가 받는다 (movies-service 의 캐시 무효화도 replica 여러 대에서 동작한다).
+ * 각 항목의 id 는 resume token 이라서 client 는 마지막으로 받은 id 부터 다시 받을 수 있다 (oplog 에 남아있는 동안).
+ * Mongo 가 replica set 으로 떠 있어야 한다 (single node 도 가능).
+ */
+@Component
+@Slf4j
+public class MovieInfoChangeStream {
+
+    // 8.0 이전 Mongo 의 resume token(_data) 은 hex 문자열
+    private static final Pattern RESUME_TOKEN = Pattern.compile("[0-9A-Fa-f]+");
+    // ChangeStreamHistoryLost : resume token 이 oplog 범위를 벗어남
+    private static final int HISTORY_LOST = 286;
+    // resume token 을 잃고 다시 연결할 때 이만큼 앞선 시각부터 받는다 (서버와 Mongo 의 시계 차이로 변경을 놓치지 않도록)
+    // 겹치는 구간의 변경은 한 번 더 publish 된다
+    private static final Duration RESTART_OVERLAP = Duration.ofSeconds(5);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final MovieInfoStreamHub movieInfoStreamHub;
+    private final MovieInfoEventPublisher movieInfoEventPublisher;
+    private final MovieInfoStreamProperties properties;
+
+    private volatile String lastResumeToken;
+    // resume token 없이 다시 연결할 때의 시작 시각 (token 을 oplog 에서 잃은 경우)
+    private volatile Instant restartAt;
+    private Disposable subscription;
+
+    public MovieInfoChangeStream(ReactiveMongoTemplate reactiveMongoTemplate, MovieInfoStreamHub movieInfoStreamHub,
+                                 MovieInfoEventPublisher movieInfoEventPublisher, MovieInfoStreamProperties properties) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.movieInfoStreamHub = movieInfoStreamHub;
+        this.movieInfoEventPublisher = movieInfoEventPublisher;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (properties.getSource() != MovieInfoStreamProperties.Source.CHANGE_STREAM) {
+            return;
+        }
+        // 끊기면 마지막으로 publish 한 항목 다음부터 다시 연결한다
+        // 그 위치가 oplog 에서 지워졌으면(410) 같은 token 으로 계속 재시도하지 않고 token 을 버리고 지금부터 다시 받는다
+        subscription = Flux.defer(() -> watch(lastResumeToken, restartAt))
+                .doOnSubscribe(s -> log.info("subscribing movieInfo change stream (resume token : {}, restart at : {})",
+                        lastResumeToken, restartAt))
+                .doOnError(ex -> {
+                    if (isHistoryLost(ex)) {
+                        restartFromNow();
+                    } else {
+                        log.warn("movieInfo change stream disconnected : {}", ex.getMessage());
+                    }
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(properties.getChangeStreamMaxBackoff())
+                        .transientErrors(true))
+                .subscribe(event -> {
+                    lastResumeToken = encode(event);
+                    restartAt = null;
+                    if (event.getBody() != null) {
+                        movieInfoStreamHub.publish(new MovieInfoStreamEvent(lastResumeToken, event.getBody()));
+                    }
+                    var movieInfoEvent = toMovieInfoEvent(event);
+                    if (movieInfoEvent != null) {
+                        movieInfoEventPublisher.publish(movieInfoEvent);
+                    }
+                });
+    }
+
+    // 마지막 token 이후 지금까지의 변경은 알 수 없다
+    // /events 구독자(movies-service 캐시)는 feed 를 끊어서 캐시를 비우고 다시 구독하게 하고,
+    // hub 는 그 이전 위치로 resume 하는 client 를 바로 이어주지 않는다 (change stream replay 에서 410 을 받는다)
+    private void restartFromNow() {
+        log.warn("movieInfo change stream resume token {} is no longer in the oplog, restarting from now", lastResumeToken);
+        lastResumeToken = null;
+        restartAt = Instant.now().minus(RESTART_OVERLAP);
+        movieInfoEventPublisher.reset();
+        movieInfoStreamHub.clearRecent();
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    // client 가 resumeToken 다음 변경부터 이어받는다. change stream 은 hub 가 publish 한 위치에 닿을 때까지만 열어둔다
+    public Flux<MovieInfoStreamEvent> resume(String resumeToken, MovieInfoStreamFilter filter) {
+        return movieInfoStreamHub.resume(filter, resumeToken, this::changes);
+    }
+
+    // resumeToken 다음의 변경부터 (null 이면 지금부터) 저장된 movieInfo 를 내려준다
+    // 잘못된 token 은 400, oplog 에서 이미 지워진 위치면 410
+    public Flux<MovieInfoStreamEvent> changes(String resumeToken) {
+        return watch(resumeToken, null)
+                .filter(event -> event.getBody() != null)
+                .map(event -> new MovieInfoStreamEvent(encode(event), event.getBody()));
+    }
+
+    // 생성/수정/삭제 변경 (삭제는 body 가 null)
+    // resumeToken 이 있으면 그 다음부터, 없고 startAt 이 있으면 그 시각부터, 둘 다 없으면 지금부터
+    private Flux<ChangeStreamEvent<MovieInfo>> watch(String resumeToken, Instant startAt) {
+        if (resumeToken != null && !RESUME_TOKEN.matcher(resumeToken).matches()) {
+            return Flux.error(new ServerWebInputException("invalid resume token : " + resumeToken));
+        }
+        var changeStream = reactiveMongoTemplate.changeStream(MovieInfo.class)
+                .withOptions(options -> {
+                    options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+                    if (resumeToken != null) {
+                        options.resumeAfter(decode(resumeToken));
+                    } else if (startAt != null) {
+                        options.resumeAt(startAt);
+                    }
+                })
+                .watchCollection(MovieInfo.class)
+                .filter(where("operationType").in("insert", "update", "replace", "delete"));
+        return changeStream.listen()
+                .onErrorMap(MovieInfoChangeStream::isHistoryLost,
+                        ex -> new ResponseStatusException(HttpStatus.GONE, "resume token is too old, reconnect without it", ex));
+    }
+
+    private static MovieInfoEvent toMovieInfoEvent(ChangeStreamEvent<MovieInfo> event) {
+        var operationType = event.getOperationType();
+        if (operationType == OperationType.DELETE) {
+            var raw = event.getRaw();
+            var documentKey = raw != null ? raw.getDocumentKey() : null;
+            var id = documentKey != null ? documentKey.get("_id") : null;
+            return id != null && id.isString() ? MovieInfoEvent.deleted(id.asString().getValue()) : null;
+        }
+        if (event.getBody() == null) {
+            return null;
+        }
+        return operationType == OperationType.INSERT
+                ? MovieInfoEvent.created(event.getBody())
+                : MovieInfoEvent.updated(event.getBody());
+    }
+
+    private static String encode(ChangeStreamEvent<MovieInfo> event) {
+        var token = event.getResumeToken();
+        return token instanceof BsonDocument ? ((BsonDocument) token).getString("_data").getValue() : null;
+    }
+
+    private static BsonValue decode(String resumeToken) {
+        return new BsonDocument("_data", new BsonString(resumeToken));
+    }
+
+    private static boolean isHistoryLost(Throwable ex) {
+        for (var cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException && ((MongoException) cause).getCode() == HISTORY_LOST) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfoEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// movieInfo 생성/수정/삭제 이벤트를 구독자들에게 전달하는 change feed
+// 구독 이후에 발생한 이벤트만 전달 (replay 하지 않음)
+// 구독자마다 movieinfos.events.buffer-size 만큼 쌓아두고, 넘치면 이벤트를 조용히 버리지 않고 그 구독자의 stream 을 끝낸다
+// (movies-service 의 MovieInfoCacheInvalidator 는 끊기면 캐시 전체를 비우고 다시 구독한다)
+// publish 는 MovieInfoStreamHub 처럼 MPSC queue 로 직렬화해서 한 스레드만 emit 한다
+// 놓친 변경이 있으면(change stream 의 resume token 을 잃은 경우) reset 으로 모든 구독자의 feed 를 끝낸다
+@Component
+@Slf4j
+public class MovieInfoEventPublisher {
+
+    // publish queue 에서 reset 을 표시한다
+    private static final MovieInfoEvent RESET = new MovieInfoEvent();
+
+    private volatile Sinks.Many<MovieInfoEvent> eventSink = Sinks.many().multicast().directBestEffort();
+    private final Queue<MovieInfoEvent> publishQueue = Queues.<MovieInfoEvent>unboundedMultiproducer().get();
+    private final AtomicInteger publishWip = new AtomicInteger();
+    private final int bufferSize;
+    private final Counter overflowed;
+
+    public MovieInfoEventPublisher(@Value("${movieinfos.events.buffer-size:1024}") int bufferSize,
+                                   MeterRegistry meterRegistry) {
+        this.bufferSize = bufferSize;
+        this.overflowed = Counter.builder("movieinfos.events.overflow")
+                .description("buffer 가 넘쳐서 끊은 change feed 구독 수")
+                .register(meterRegistry);
+    }
+
+    public void publish(MovieInfoEvent event) {
+        enqueue(event);
+    }
+
+    // 지금까지의 구독자에게는 stream 을 끝내고 (구독자가 캐시를 비우고 다시 구독한다), 이후 구독자는 새 sink 에서 받는다
+    public void reset() {
+        enqueue(RESET);
+    }
+
+    private void enqueue(MovieInfoEvent event) {
+        publishQueue.offer(event);
+        if (publishWip.getAndIncrement() != 0) {
+            return;
+        }
+        var missed = 1;
+        do {
+            MovieInfoEvent next;
+            while ((next = publishQueue.poll()) != null) {
+                if (next == RESET) {
+                    var previous = eventSink;
+                    eventSink = Sinks.many().multicast().directBestEffort();
+                    previous.tryEmitComplete();
+                    log.info("movieInfo event feed reset");
+                    continue;
+                }
+                // 한 스레드만 emit 하므로 FAIL_NON_SERIALIZED 는 나오지 않는다 (구독자가 없으면 FAIL_ZERO_SUBSCRIBER)
+                eventSink.tryEmitNext(next);
+                log.debug("movieInfo event published : {} {}", next.getType(), next.getMovieInfoId());
+            }
+            missed = publishWip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    public Flux<MovieInfoEvent> events() {
+        return Flux.defer(() -> eventSink.asFlux())
+                .onBackpressureBuffer(bufferSize, dropped -> { }, BufferOverflowStrategy.ERROR)
+                .onErrorResume(Exceptions::isOverflow, ex -> {
+                    log.warn("movieInfo event subscriber is too slow, closing its feed");
+                    overflowed.increment();
+                    return Flux.empty();
+                });
+    }
+}
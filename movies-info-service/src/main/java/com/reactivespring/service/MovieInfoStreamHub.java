@@ -0,0 +1,582 @@
+package com.reactivespring.service;
+
+import com.reactivespring.config.MovieInfoStreamProperties;
+import com.reactivespring.config.MovieInfoStreamProperties.OverflowPolicy;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoStreamEvent;
+import com.reactivespring.domain.MovieInfoStreamFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * /v1/movieinfos/stream 구독자들에게 저장된 movieInfo 를 나눠주는 fan-out hub.
+ * (movieinfos.stream.source=CHANGE_STREAM 이면 MovieInfoChangeStream 이, 아니면 이 노드의 저장 요청이 publish 한다)
+ * 구독자마다 크기가 제한된 queue 를 두고 client 의 demand 만큼만 꺼내 보내므로,
+ * 느린 구독자가 있어도 publish(저장 경로)는 기다리지 않고 다른 구독자에게도 영향이 없다.
+ * publish 하는 스레드는 queue 에 넣기만 하고, 구독자를 찾아 나눠주는 dispatch 는 hub 의 dispatch worker 에서,
+ * 구독자별 전송(sink.next 와 그 뒤의 encoding)은 구독자마다 배정된 worker 에서 실행하므로 publish 시간은 구독자 수와 상관없다.
+ * queue 가 가득 차면 movieinfos.stream.overflow-policy 에 따라 버리거나 합치거나 구독을 끊는다.
+ * 새 구독자는 마지막으로 저장된 movieInfo 부터 받는다.
+ * publish 는 여러 스레드에서 동시에 호출해도 되고 (lock 없이 MPSC queue 에 넣고 dispatch worker 가 구독자들에게 나눠준다),
+ * 모든 구독자가 같은 순서로 받는다. publish 결과는 movieinfos.stream.emit (result tag) 로 센다.
+ * 구독자는 ids / year / cast filter 를 걸 수 있고, publish 된 movieInfo 는 SubscriptionIndex 로 찾은 구독자에게만 전달한다
+ * (모든 구독자의 filter 를 검사하지 않으므로 구독자 수가 늘어도 dispatch 비용은 받는 구독자 수에만 비례한다).
+ * resume token 으로 이어받는 구독자(resume)는 최근 publish 된 항목에서, 없으면 replay(change stream)에서 이어받다가
+ * hub 가 publish 한 위치에 닿으면 그때부터 일반 구독자처럼 hub 에서 받는다 (replay cursor 는 닫고, 동시에 열린 수는 제한한다).
+ */
+@Component
+@Slf4j
+public class MovieInfoStreamHub {
+
+    static final String METRIC_PREFIX = "movieinfos.stream";
+
+    private final MovieInfoStreamProperties properties;
+    private final Set<StreamSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final SubscriptionIndex index = new SubscriptionIndex();
+    private final AtomicReference<MovieInfoStreamEvent> latest = new AtomicReference<>();
+    private final AtomicLong maxLag = new AtomicLong();
+    private final Disposable ticker;
+    // dispatch 와 구독자별 전송을 실행한다. dispatch 는 worker 하나에서 순서대로, 구독자마다 worker 를 하나씩 배정한다
+    private final Scheduler scheduler;
+    private final Scheduler.Worker dispatcher;
+
+    // publish / 구독 등록 / resume 처리를 한 queue 에 넣어 순서대로 dispatch worker 에서 실행한다
+    // wip 를 0 에서 올린 스레드가 dispatch worker 에 dispatch 를 맡긴다
+    private final Queue<Runnable> commands = Queues.<Runnable>unboundedMultiproducer().get();
+    private final AtomicInteger publishWip = new AtomicInteger();
+    // 아래 두 map 은 dispatch 스레드에서만 쓴다
+    // 최근 publish 된 항목 (id 가 있는 것만). resume token 이 여기 있으면 change stream 을 열지 않고 바로 이어준다
+    private final LinkedHashMap<String, MovieInfoStreamEvent> recent = new LinkedHashMap<>();
+    // replay 가 hub 보다 앞서 있는 resume 구독자. hub 가 이 id 를 publish 하면 그때부터 hub 에서 받는다
+    private final Map<String, Set<StreamSubscriber>> awaiting = new HashMap<>();
+    private final AtomicInteger resumeCursors = new AtomicInteger();
+    private volatile boolean terminated;
+    private final Map<Sinks.EmitResult, Counter> emitCounters = new EnumMap<>(Sinks.EmitResult.class);
+
+    private final DistributionSummary lagSummary;
+    private final Counter droppedOldest;
+    private final Counter conflated;
+    private final Counter disconnected;
+
+    public MovieInfoStreamHub(MovieInfoStreamProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+
+        Gauge.builder(METRIC_PREFIX + ".subscribers", subscribers, Set::size)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".resume.cursors", resumeCursors, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".subscriber.lag.max", maxLag, AtomicLong::get)
+                .baseUnit("events")
+                .register(meterRegistry);
+        // heartbeat 주기마다 구독자별로 아직 못 보낸 항목 수를 기록한다
+        this.lagSummary = DistributionSummary.builder(METRIC_PREFIX + ".subscriber.lag")
+                .baseUnit("events")
+                .register(meterRegistry);
+        this.droppedOldest = droppedCounter(meterRegistry, "drop_oldest");
+        this.conflated = droppedCounter(meterRegistry, "conflated");
+        this.disconnected = droppedCounter(meterRegistry, "disconnected");
+        for (var result : Sinks.EmitResult.values()) {
+            emitCounters.put(result, Counter.builder(METRIC_PREFIX + ".emit")
+                    .tag("result", result.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+
+        this.scheduler = Schedulers.newParallel("movieinfo-stream", Schedulers.DEFAULT_POOL_SIZE, true);
+        this.dispatcher = scheduler.createWorker();
+
+        // 구독자마다 timer 를 두지 않고 하나의 ticker 로 heartbeat / lag 를 처리한다
+        this.ticker = Flux.interval(properties.getHeartbeatInterval())
+                .subscribe(tick -> tick());
+    }
+
+    private static Counter droppedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder(METRIC_PREFIX + ".dropped")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public Sinks.EmitResult publish(MovieInfo movieInfo) {
+        return publish(new MovieInfoStreamEvent(null, movieInfo));
+    }
+
+    // 구독자에게 전달되기 전에 반환될 수 있다 (다른 스레드가 dispatch 중이면 그 스레드가 대신 전달한다)
+    public Sinks.EmitResult publish(MovieInfoStreamEvent event) {
+        if (terminated) {
+            return emitted(Sinks.EmitResult.FAIL_TERMINATED);
+        }
+        execute(() -> deliver(event));
+        return emitted(Sinks.EmitResult.OK);
+    }
+
+    private void scheduleDispatch() {
+        try {
+            dispatcher.schedule(this::dispatch);
+        } catch (RejectedExecutionException e) {
+            // dispose 된 뒤
+            log.debug("movieInfo stream hub is disposed, skipping dispatch");
+        }
+    }
+
+    private void dispatch() {
+        var missed = 1;
+        do {
+            Runnable command;
+            while ((command = commands.poll()) != null) {
+                command.run();
+            }
+            missed = publishWip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void deliver(MovieInfoStreamEvent event) {
+        if (event.getMovieInfo() == null) {
+            return;
+        }
+        latest.set(event);
+        index.forEachMatch(event.getMovieInfo(), subscriber -> subscriber.offer(event));
+        if (event.getId() == null) {
+            return;
+        }
+        recent.put(event.getId(), event);
+        if (recent.size() > properties.getResumeWindowSize()) {
+            var eldest = recent.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        // replay 로 이미 이 항목까지 받은 구독자는 다음 항목부터 hub 에서 받는다
+        var caughtUp = awaiting.remove(event.getId());
+        if (caughtUp != null) {
+            caughtUp.forEach(this::handOff);
+        }
+    }
+
+    // 지금까지 publish 한 위치로 resume 하는 구독자를 hub 에서 바로 이어주지 않는다 (replay 로 확인하게 한다)
+    // change stream 이 놓친 구간이 있을 때, 그 이전 위치에서 이어받는 client 가 구간을 조용히 건너뛰지 않도록
+    public void clearRecent() {
+        execute(recent::clear);
+    }
+
+    private void execute(Runnable command) {
+        commands.offer(command);
+        if (publishWip.getAndIncrement() == 0) {
+            scheduleDispatch();
+        }
+    }
+
+    private Sinks.EmitResult emitted(Sinks.EmitResult result) {
+        emitCounters.get(result).increment();
+        if (result.isFailure()) {
+            log.warn("movieInfo stream emit failed : {}", result);
+        }
+        return result;
+    }
+
+    public Flux<MovieInfoStreamEvent> subscribe() {
+        return subscribe(MovieInfoStreamFilter.ALL);
+    }
+
+    public Flux<MovieInfoStreamEvent> subscribe(MovieInfoStreamFilter filter) {
+        return Flux.create(sink -> {
+            var subscriber = new StreamSubscriber(sink, filter, scheduler.createWorker());
+            subscribers.add(subscriber);
+            sink.onRequest(n -> subscriber.drain());
+            sink.onDispose(() -> unregister(subscriber));
+            execute(() -> register(subscriber));
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    // 앞서 publish 된 항목이 모두 dispatch 된 뒤에 실행되므로 latest 가 이 구독 시점의 마지막 항목이다
+    private void register(StreamSubscriber subscriber) {
+        index.add(subscriber);
+        // onDispose 와 동시에 실행되었으면 다시 뺀다
+        if (subscriber.closed) {
+            index.remove(subscriber);
+            return;
+        }
+        var last = latest.get();
+        if (last != null && subscriber.filter.matches(last.getMovieInfo())) {
+            subscriber.offer(last);
+        }
+    }
+
+    // resumeToken 다음 항목부터 이어서 받는다. hub 가 최근에 publish 한 위치면 바로, 아니면 replay(resumeToken) 로 받다가
+    // hub 가 publish 한 위치에 닿으면 replay 를 닫고 hub 에서 받는다 (replay 중에도 같은 buffer / overflow policy / heartbeat 를 쓴다)
+    // 동시에 열 수 있는 replay 는 movieinfos.stream.max-resume-cursors 개이고, 넘으면 503
+    public Flux<MovieInfoStreamEvent> resume(MovieInfoStreamFilter filter, String resumeToken,
+                                             Function<String, Flux<MovieInfoStreamEvent>> replay) {
+        return Flux.create(sink -> {
+            var subscriber = new StreamSubscriber(sink, filter, scheduler.createWorker());
+            subscribers.add(subscriber);
+            sink.onRequest(n -> subscriber.drain());
+            sink.onDispose(() -> unregister(subscriber));
+            execute(() -> startResume(subscriber, resumeToken, replay));
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    private void startResume(StreamSubscriber subscriber, String resumeToken,
+                             Function<String, Flux<MovieInfoStreamEvent>> replay) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (recent.containsKey(resumeToken)) {
+            offerAfter(subscriber, resumeToken);
+            handOff(subscriber);
+            return;
+        }
+        if (resumeCursors.incrementAndGet() > properties.getMaxResumeCursors()) {
+            resumeCursors.decrementAndGet();
+            subscriber.sink.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "too many resuming subscribers, retry later or reconnect without a resume token"));
+            return;
+        }
+        subscriber.replay.update(replay.apply(resumeToken)
+                .doFinally(signal -> resumeCursors.decrementAndGet())
+                .subscribe(event -> execute(() -> onReplay(subscriber, event)),
+                        ex -> execute(() -> {
+                            if (!subscriber.handedOff) {
+                                subscriber.sink.error(ex);
+                            }
+                        })));
+    }
+
+    private void onReplay(StreamSubscriber subscriber, MovieInfoStreamEvent event) {
+        if (subscriber.handedOff || subscriber.closed) {
+            return;
+        }
+        if (recent.containsKey(event.getId())) {
+            // hub 가 이미 publish 한 위치. 그 뒤는 recent 에서 채우고 hub 로 넘긴다
+            offerIfMatches(subscriber, event);
+            offerAfter(subscriber, event.getId());
+            handOff(subscriber);
+            return;
+        }
+        // hub 보다 뒤처져 있거나 (아직 replay 중) 앞서 있다 (hub 가 이 id 를 publish 하면 넘긴다)
+        offerIfMatches(subscriber, event);
+        await(subscriber, event.getId());
+    }
+
+    private void offerAfter(StreamSubscriber subscriber, String id) {
+        var after = false;
+        for (var entry : recent.entrySet()) {
+            if (after) {
+                offerIfMatches(subscriber, entry.getValue());
+            } else if (entry.getKey().equals(id)) {
+                after = true;
+            }
+        }
+    }
+
+    private static void offerIfMatches(StreamSubscriber subscriber, MovieInfoStreamEvent event) {
+        if (subscriber.filter.matches(event.getMovieInfo())) {
+            subscriber.offer(event);
+        }
+    }
+
+    private void await(StreamSubscriber subscriber, String id) {
+        unawait(subscriber);
+        subscriber.awaitingId = id;
+        awaiting.computeIfAbsent(id, key -> new HashSet<>()).add(subscriber);
+    }
+
+    private void unawait(StreamSubscriber subscriber) {
+        if (subscriber.awaitingId == null) {
+            return;
+        }
+        var waiting = awaiting.get(subscriber.awaitingId);
+        if (waiting != null && waiting.remove(subscriber) && waiting.isEmpty()) {
+            awaiting.remove(subscriber.awaitingId);
+        }
+        subscriber.awaitingId = null;
+    }
+
+    private void handOff(StreamSubscriber subscriber) {
+        unawait(subscriber);
+        subscriber.handedOff = true;
+        subscriber.replay.dispose();
+        index.add(subscriber);
+        // onDispose 와 동시에 실행되었으면 다시 뺀다
+        if (subscriber.closed) {
+            index.remove(subscriber);
+        }
+    }
+
+    private void unregister(StreamSubscriber subscriber) {
+        subscriber.closed = true;
+        subscriber.replay.dispose();
+        subscriber.worker.dispose();
+        subscribers.remove(subscriber);
+        index.remove(subscriber);
+        if (subscriber.awaitingId != null) {
+            execute(() -> unawait(subscriber));
+        }
+    }
+
+    // 앞서 publish 된 항목이 구독자 queue 에 들어간 뒤의 lag 를 재도록 dispatch worker 에서 실행한다
+    void tick() {
+        execute(this::heartbeat);
+    }
+
+    private void heartbeat() {
+        var now = System.nanoTime();
+        var heartbeatNanos = properties.getHeartbeatInterval().toNanos();
+        long max = 0;
+        for (var subscriber : subscribers) {
+            var lag = subscriber.lag();
+            lagSummary.record(lag);
+            max = Math.max(max, lag);
+            if (now - subscriber.lastSentNanos >= heartbeatNanos) {
+                subscriber.heartbeatDue = true;
+                subscriber.drain();
+            }
+        }
+        maxLag.set(max);
+    }
+
+    @PreDestroy
+    public void dispose() {
+        terminated = true;
+        ticker.dispose();
+        subscribers.forEach(subscriber -> subscriber.sink.complete());
+        scheduler.dispose();
+    }
+
+    // 구독자 하나의 queue. offer 는 여러 스레드에서 올 수 있고, sink 로 보내는 것은 이 구독자의 worker 에서 한 번에 하나씩만 한다 (wip)
+    private final class StreamSubscriber {
+
+        private final FluxSink<MovieInfoStreamEvent> sink;
+        private final MovieInfoStreamFilter filter;
+        private final Scheduler.Worker worker;
+        // SubscriptionIndex 가 한 번의 dispatch 에서 같은 구독자를 두 번 찾지 않도록 (dispatch 스레드에서만 쓴다)
+        private long dispatchStamp;
+        // CONFLATE 이면 movieInfoId, 아니면 순번을 key 로 쓴다 (LinkedHashMap 은 덮어써도 순서가 유지된다)
+        private final LinkedHashMap<Object, MovieInfoStreamEvent> pending = new LinkedHashMap<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private long sequence;
+        private boolean overflowed;
+        private volatile long lastSentNanos = System.nanoTime();
+        private volatile boolean heartbeatDue;
+        // resume 구독자의 replay cursor. hub 로 넘어가거나 구독이 끝나면 닫는다
+        private final Disposable.Swap replay = Disposables.swap();
+        private volatile boolean closed;
+        // 아래 두 필드는 dispatch 스레드에서만 쓴다
+        private boolean handedOff;
+        private String awaitingId;
+
+        StreamSubscriber(FluxSink<MovieInfoStreamEvent> sink, MovieInfoStreamFilter filter, Scheduler.Worker worker) {
+            this.sink = sink;
+            this.filter = filter;
+            this.worker = worker;
+        }
+
+        void offer(MovieInfoStreamEvent event) {
+            synchronized (pending) {
+                if (overflowed) {
+                    return;
+                }
+                var key = key(event.getMovieInfo());
+                if (pending.containsKey(key)) {
+                    pending.put(key, event);
+                    conflated.increment();
+                } else if (pending.size() < properties.getBufferSize()) {
+                    pending.put(key, event);
+                } else if (properties.getOverflowPolicy() == OverflowPolicy.DISCONNECT) {
+                    overflowed = true;
+                    pending.clear();
+                } else {
+                    var eldest = pending.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    droppedOldest.increment();
+                    pending.put(key, event);
+                }
+            }
+            drain();
+        }
+
+        private Object key(MovieInfo movieInfo) {
+            if (properties.getOverflowPolicy() == OverflowPolicy.CONFLATE && movieInfo != null && movieInfo.getMovieInfoId() != null) {
+                return movieInfo.getMovieInfoId();
+            }
+            return sequence++;
+        }
+
+        int lag() {
+            synchronized (pending) {
+                return pending.size();
+            }
+        }
+
+        private MovieInfoStreamEvent poll() {
+            synchronized (pending) {
+                var iterator = pending.values().iterator();
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                var next = iterator.next();
+                iterator.remove();
+                return next;
+            }
+        }
+
+        // 호출한 스레드(dispatch, 요청, ticker)에서 보내지 않고 worker 에 맡긴다
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                worker.schedule(this::drainLoop);
+            } catch (RejectedExecutionException e) {
+                // 구독이 끝나서 worker 가 dispose 되었다
+                wip.set(0);
+            }
+        }
+
+        private void drainLoop() {
+            var missed = 1;
+            do {
+                boolean overflow;
+                synchronized (pending) {
+                    overflow = overflowed;
+                }
+                if (overflow) {
+                    log.debug("movieInfo stream subscriber is too slow, disconnecting");
+                    disconnected.increment();
+                    unregister(this);
+                    sink.complete();
+                    return;
+                }
+
+                var sent = false;
+                while (sink.requestedFromDownstream() > 0) {
+                    var next = poll();
+                    if (next == null) {
+                        break;
+                    }
+                    sink.next(next);
+                    sent = true;
+                }
+                if (heartbeatDue && !sent && sink.requestedFromDownstream() > 0) {
+                    sink.next(MovieInfoStreamEvent.heartbeat());
+                    sent = true;
+                }
+                if (sent) {
+                    heartbeatDue = false;
+                    lastSentNanos = System.nanoTime();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+    // filter 의 한 항목(ids > year > cast 순으로 먼저 있는 것)의 값마다 구독자를 등록해두는 역색인
+    // 등록된 값과 일치하는 구독자만 나머지 조건을 검사하고, filter 가 없는 구독자는 항상 받는다
+    private static final class SubscriptionIndex {
+
+        private final Set<StreamSubscriber> unfiltered = ConcurrentHashMap.newKeySet();
+        private final Map<String, Set<StreamSubscriber>> byId = new ConcurrentHashMap<>();
+        private final Map<Integer, Set<StreamSubscriber>> byYear = new ConcurrentHashMap<>();
+        private final Map<String, Set<StreamSubscriber>> byCast = new ConcurrentHashMap<>();
+        private long dispatchStamp;
+
+        void add(StreamSubscriber subscriber) {
+            var filter = subscriber.filter;
+            if (!filter.getIds().isEmpty()) {
+                filter.getIds().forEach(id -> add(byId, id, subscriber));
+            } else if (!filter.getYears().isEmpty()) {
+                filter.getYears().forEach(year -> add(byYear, year, subscriber));
+            } else if (!filter.getCast().isEmpty()) {
+                filter.getCast().forEach(cast -> add(byCast, cast, subscriber));
+            } else {
+                unfiltered.add(subscriber);
+            }
+        }
+
+        void remove(StreamSubscriber subscriber) {
+            var filter = subscriber.filter;
+            unfiltered.remove(subscriber);
+            filter.getIds().forEach(id -> remove(byId, id, subscriber));
+            filter.getYears().forEach(year -> remove(byYear, year, subscriber));
+            filter.getCast().forEach(cast -> remove(byCast, cast, subscriber));
+        }
+
+        private static <K> void add(Map<K, Set<StreamSubscriber>> index, K key, StreamSubscriber subscriber) {
+            index.compute(key, (k, subscribers) -> {
+                var set = subscribers != null ? subscribers : ConcurrentHashMap.<StreamSubscriber>newKeySet();
+                set.add(subscriber);
+                return set;
+            });
+        }
+
+        private static <K> void remove(Map<K, Set<StreamSubscriber>> index, K key, StreamSubscriber subscriber) {
+            index.computeIfPresent(key, (k, subscribers) -> {
+                subscribers.remove(subscriber);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+
+        // publish 의 dispatch 스레드에서만 호출된다
+        void forEachMatch(MovieInfo movieInfo, Consumer<StreamSubscriber> action) {
+            var stamp = ++dispatchStamp;
+            unfiltered.forEach(action);
+            if (movieInfo.getMovieInfoId() != null) {
+                visit(byId.get(movieInfo.getMovieInfoId()), stamp, movieInfo, action);
+            }
+            if (movieInfo.getYear() != null) {
+                visit(byYear.get(movieInfo.getYear()), stamp, movieInfo, action);
+            }
+            if (movieInfo.getCast() != null) {
+                for (var cast : movieInfo.getCast()) {
+                    if (cast != null) {
+                        visit(byCast.get(cast), stamp, movieInfo, action);
+                    }
+                }
+            }
+        }
+
+        private static void visit(Set<StreamSubscriber> candidates, long stamp, MovieInfo movieInfo,
+                                  Consumer<StreamSubscriber> action) {
+            if (candidates == null) {
+                return;
+            }
+            for (var subscriber : candidates) {
+                // 출연진 여러 명이 같은 구독자의 cast filter 에 걸려도 한 번만 보낸다
+                if (subscriber.dispatchStamp != stamp) {
+                    subscriber.dispatchStamp = stamp;
+                    if (subscriber.filter.matches(movieInfo)) {
+                        action.accept(subscriber);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,31 +1,98 @@
 package com.reactivespring.service;
 
+import com.reactivespring.config.MovieInfoStreamProperties;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
 import com.reactivespring.repository.MovieInfoRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 @Service
 public class MoviesInfoService {
 
+    static final Set<String> PROJECTABLE_FIELDS = Set.of("movieInfoId", "name", "year", "cast", "release_date");
+
     private final MovieInfoRepository movieInfoRepository;
+    private final MovieInfoEventPublisher movieInfoEventPublisher;
+    private final MovieInfoStreamProperties streamProperties;
 
-    public MoviesInfoService(MovieInfoRepository movieInfoRepository) {
+    public MoviesInfoService(MovieInfoRepository movieInfoRepository, MovieInfoEventPublisher movieInfoEventPublisher,
+                             MovieInfoStreamProperties streamProperties) {
         this.movieInfoRepository = movieInfoRepository;
+        this.movieInfoEventPublisher = movieInfoEventPublisher;
+        this.streamProperties = streamProperties;
     }
 
     public Flux<MovieInfo> getAllMovieInfos() {
         return movieInfoRepository.findAll();
     }
 
+    public Flux<MovieInfo> getAllMovieInfos(Collection<String> fields) {
+        if (fields == null || fields.isEmpty())
+            return getAllMovieInfos();
+        return movieInfoRepository.findProjected(new Query(), validFields(fields));
+    }
+
+    // cursor(after) 다음 movieInfoId 부터 limit 건 조회
+    public Flux<MovieInfo> getMovieInfos(String after, int limit) {
+        var pageable = PageRequest.of(0, limit, Sort.by("movieInfoId"));
+        if (after == null)
+            return movieInfoRepository.findAllBy(pageable);
+        return movieInfoRepository.findByMovieInfoIdGreaterThan(after, pageable);
+    }
+
+    // fields 가 있으면 해당 필드만 projection 해서 조회
+    public Flux<MovieInfo> getMovieInfos(String after, int limit, Collection<String> fields) {
+        if (fields == null || fields.isEmpty())
+            return getMovieInfos(after, limit);
+        var query = new Query().with(PageRequest.of(0, limit, Sort.by("movieInfoId")));
+        if (after != null)
+            query.addCriteria(where("movieInfoId").gt(after));
+        return movieInfoRepository.findProjected(query, validFields(fields));
+    }
+
+    // 여러 id 를 한 번의 $in 쿼리로 조회
+    public Flux<MovieInfo> getMovieInfosByIds(List<String> ids) {
+        return movieInfoRepository.findAllById(ids);
+    }
+
+    public Flux<MovieInfo> getMovieInfosByIds(List<String> ids, Collection<String> fields) {
+        if (fields == null || fields.isEmpty())
+            return getMovieInfosByIds(ids);
+        return movieInfoRepository.findProjected(new Query(where("movieInfoId").in(ids)), validFields(fields));
+    }
+
     public Flux<MovieInfo> getMovieInfoByYear(Integer year){
         System.out.println(year);
         return movieInfoRepository.findByYear(year);
     }
 
+    public Flux<MovieInfo> getMovieInfoByYear(Integer year, Collection<String> fields) {
+        if (fields == null || fields.isEmpty())
+            return getMovieInfoByYear(year);
+        return movieInfoRepository.findProjected(new Query(where("year").is(year)), validFields(fields));
+    }
+
+    private static Collection<String> validFields(Collection<String> fields) {
+        if (!PROJECTABLE_FIELDS.containsAll(fields))
+            throw new ServerWebInputException("fields must be one of " + PROJECTABLE_FIELDS);
+        return fields;
+    }
+
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
-        return movieInfoRepository.save(movieInfo);
+        return movieInfoRepository.save(movieInfo)
+                .doOnNext(savedMovieInfo -> publish(MovieInfoEvent.created(savedMovieInfo)));
     }
 
     public Mono<MovieInfo> getMovieInfo(String id) {
@@ -40,10 +107,26 @@ public class MoviesInfoService {
                     movieInfo1.setRelease_date(movieInfo.getRelease_date());
                     movieInfo1.setCast(movieInfo.getCast());
                     return movieInfoRepository.save(movieInfo1);
-                });
+                })
+                .doOnNext(updatedMovieInfo -> publish(MovieInfoEvent.updated(updatedMovieInfo)));
     }
 
+    // 실제로 삭제한 경우에만 DELETED 를 publish 한다 (없는 id 이거나 동시에 온 다른 삭제 요청이 먼저 지웠으면 publish 하지 않는다)
     public Mono<Void> deleteMovieInfo(String id) {
-        return movieInfoRepository.deleteById(id);
+        return movieInfoRepository.deleteByMovieInfoId(id)
+                .filter(deleted -> deleted > 0)
+                .doOnNext(deleted -> publish(MovieInfoEvent.deleted(id)))
+                .then();
+    }
+
+    // source 가 CHANGE_STREAM 이면 MovieInfoChangeStream 이 모든 replica 의 변경을 publish 하므로 여기서는 하지 않는다
+    private void publish(MovieInfoEvent event) {
+        if (streamProperties.getSource() == MovieInfoStreamProperties.Source.LOCAL) {
+            movieInfoEventPublisher.publish(event);
+        }
+    }
+
+    public Flux<MovieInfoEvent> getMovieInfoEvents() {
+        return movieInfoEventPublisher.events();
     }
 }
@@ -1,6 +1,7 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
 import com.reactivespring.repository.MovieInfoRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -13,8 +14,10 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
@@ -99,6 +102,51 @@ class MovieInfoControllerIntgTest {
                 .verify();
     }
 
+    @Test
+    void getMovieInfoEvents() {
+        // given
+        // stream 응답은 첫 이벤트가 나와야 헤더가 내려오므로, 변경 요청은 구독 이후 별도로 보낸다
+        var newMovieInfo = new MovieInfo(null, "Dark Knight Rises 1",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        Mono.delay(Duration.ofMillis(500))
+                .doOnNext(tick -> {
+                    webTestClient.put()
+                            .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                            .bodyValue(newMovieInfo)
+                            .exchange()
+                            .expectStatus()
+                            .is2xxSuccessful();
+                    webTestClient.delete()
+                            .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                            .exchange()
+                            .expectStatus()
+                            .isNoContent();
+                })
+                .subscribe();
+
+        // when
+        var eventFlux = webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/events")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody();
+
+        // then
+        StepVerifier.create(eventFlux)
+                .assertNext(event -> {
+                    assert event.getType() == MovieInfoEvent.Type.UPDATED;
+                    assert event.getMovieInfoId().equals("abc");
+                })
+                .assertNext(event -> {
+                    assert event.getType() == MovieInfoEvent.Type.DELETED;
+                    assert event.getMovieInfoId().equals("abc");
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
     @Test
     void addMovieInfo() {
         // given
@@ -164,6 +212,46 @@ class MovieInfoControllerIntgTest {
                 });
     }
 
+    @Test
+    void getMovieInfosByIds() {
+        var uri = UriComponentsBuilder.fromUriString(MOVIES_INFO_URL)
+                .queryParam("ids", "abc,def")
+                .buildAndExpand()
+                .toUri();
+
+        webTestClient.get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var bodyValue = movieInfoEntityExchangeResult.getResponseBody();
+                    assert Objects.requireNonNull(bodyValue).size() == 1;
+                    Assertions.assertEquals("abc", bodyValue.get(0).getMovieInfoId());
+                });
+    }
+
+    @Test
+    void getMovieInfosByIds_fields() {
+        var uri = UriComponentsBuilder.fromUriString(MOVIES_INFO_URL)
+                .queryParam("ids", "abc")
+                .queryParam("fields", "name,year")
+                .buildAndExpand()
+                .toUri();
+
+        webTestClient.get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0].movieInfoId").isEqualTo("abc")
+                .jsonPath("$[0].name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$[0].year").isEqualTo(2012)
+                .jsonPath("$[0].cast").doesNotExist();
+    }
+
     @Test
     void getMovieInfoById_1(){
         var id = "def";
@@ -0,0 +1,93 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.config.MongoIndexInitializer;
+import com.reactivespring.domain.MovieInfo;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// repository finder 들이 사용하는 쿼리의 실행 계획(explain)을 확인해서 COLLSCAN 으로 회귀하면 실패시킨다
+@DataMongoTest
+@Import(MongoIndexInitializer.class)
+@TestPropertySource(properties = "spring.mongodb.embedded.version=3.0.0")
+@ActiveProfiles("test")
+class MovieInfoRepositoryIndexTest {
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setup() {
+        var movieInfoList = List.of(new MovieInfo(null, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        movieInfoRepository.saveAll(movieInfoList)
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void findByYear() {
+        assertIndexScan(new Query(where("year").is(2005)));
+    }
+
+    @Test
+    void findByName() {
+        assertIndexScan(new Query(where("name").is("Batman Begins")));
+    }
+
+    @Test
+    void findByMovieInfoIdGreaterThan() {
+        assertIndexScan(new Query(where("movieInfoId").gt("abc"))
+                .with(Sort.by("movieInfoId"))
+                .limit(10));
+    }
+
+    private void assertIndexScan(Query query) {
+        var entity = reactiveMongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(MovieInfo.class);
+        var queryMapper = new QueryMapper(reactiveMongoTemplate.getConverter());
+        var filter = queryMapper.getMappedObject(query.getQueryObject(), entity);
+        var sort = queryMapper.getMappedSort(query.getSortObject(), entity);
+
+        var explain = reactiveMongoTemplate.getCollection(entity.getCollection())
+                .flatMap(collection -> Mono.from(collection.find(filter)
+                        .sort(sort)
+                        .limit(query.getLimit())
+                        .explain(Document.class)))
+                .block();
+
+        assert explain != null;
+        var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+        assertTrue(winningPlan.contains("IXSCAN"), winningPlan);
+    }
+}
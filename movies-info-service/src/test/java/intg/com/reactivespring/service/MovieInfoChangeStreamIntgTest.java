@@ -0,0 +1,154 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+// change stream 은 replica set 이 필요해서 embedded mongo 대신 로컬 replica set 으로 실행한다 (READMD.md 참고)
+// MONGO_REPLICA_SET_URI=mongodb://localhost:27017/movieinfo-test?replicaSet=rs0 ./gradlew test
+@EnabledIfEnvironmentVariable(named = "MONGO_REPLICA_SET_URI", matches = ".+")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.data.mongodb.uri=${MONGO_REPLICA_SET_URI}",
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration",
+        "movieinfos.stream.source=CHANGE_STREAM"
+})
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+class MovieInfoChangeStreamIntgTest {
+
+    static final ParameterizedTypeReference<ServerSentEvent<MovieInfo>> SSE_TYPE = new ParameterizedTypeReference<>() {
+    };
+
+    static String MOVIES_INFO_URL = "/v1/movieinfos";
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    private static MovieInfo movieInfo(String name) {
+        return new MovieInfo(null, name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+
+    private Flux<ServerSentEvent<MovieInfo>> stream(String lastEventId) {
+        var request = webTestClient.mutate()
+                .responseTimeout(Duration.ofSeconds(30))
+                .build()
+                .get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM);
+        if (lastEventId != null) {
+            request = request.header("Last-Event-ID", lastEventId);
+        }
+        return request.exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(SSE_TYPE)
+                .getResponseBody()
+                .filter(event -> event.data() != null);
+    }
+
+    // controller 를 거치지 않고 저장해도 (= 다른 replica 에서 저장) stream 으로 받는다
+    private void saveLater(String... names) {
+        Mono.delay(Duration.ofMillis(500))
+                .thenMany(Flux.fromArray(names).concatMap(name -> movieInfoRepository.save(movieInfo(name))))
+                .subscribe();
+    }
+
+    @Test
+    void stream_otherReplicaWrites() {
+        // given
+        saveLater("Batman Begins");
+
+        // then
+        StepVerifier.create(stream(null))
+                .assertNext(event -> {
+                    Assertions.assertEquals("Batman Begins", event.data().getName());
+                    Assertions.assertNotNull(event.id());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void stream_resumeFromLastEventId() {
+        // given : 첫 번째 항목까지 받고 끊는다
+        saveLater("first", "second", "third");
+        var firstId = stream(null)
+                .next()
+                .map(ServerSentEvent::id)
+                .block(Duration.ofSeconds(30));
+
+        // then : 끊긴 사이에 저장된 항목부터 이어서 받는다
+        StepVerifier.create(stream(firstId))
+                .assertNext(event -> Assertions.assertEquals("second", event.data().getName()))
+                .assertNext(event -> Assertions.assertEquals("third", event.data().getName()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void events_otherReplicaWrites() {
+        // given : 다른 replica 에서 저장 후 삭제
+        var events = webTestClient.mutate()
+                .responseTimeout(Duration.ofSeconds(30))
+                .build()
+                .get()
+                .uri(MOVIES_INFO_URL + "/events")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody();
+        Mono.delay(Duration.ofMillis(500))
+                .then(movieInfoRepository.save(movieInfo("Batman Begins")))
+                .flatMap(saved -> movieInfoRepository.deleteById(saved.getMovieInfoId()))
+                .subscribe();
+
+        // then : /v1/movieinfos/events 도 change stream 으로 받는다 (캐시 무효화)
+        StepVerifier.create(events)
+                .assertNext(event -> Assertions.assertEquals(MovieInfoEvent.Type.CREATED, event.getType()))
+                .assertNext(event -> {
+                    Assertions.assertEquals(MovieInfoEvent.Type.DELETED, event.getType());
+                    Assertions.assertNotNull(event.getMovieInfoId());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void stream_invalidResumeToken() {
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/stream?resumeToken={token}", "not-a-token")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+}
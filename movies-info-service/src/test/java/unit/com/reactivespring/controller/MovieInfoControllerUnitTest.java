@@ -1,6 +1,12 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.config.MovieInfoStreamProperties;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoStreamEvent;
+import com.reactivespring.domain.MovieInfoStreamFilter;
+import com.reactivespring.service.MovieInfoChangeStream;
+import com.reactivespring.service.MovieInfoStreamHub;
 import com.reactivespring.service.MoviesInfoService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -8,12 +14,16 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
@@ -22,6 +32,7 @@ import static org.mockito.ArgumentMatchers.isA;
 
 @WebFluxTest(controllers = MovieInfoController.class)
 @AutoConfigureWebTestClient
+@EnableConfigurationProperties(MovieInfoStreamProperties.class)
 public class MovieInfoControllerUnitTest {
 
     @Autowired
@@ -30,6 +41,12 @@ public class MovieInfoControllerUnitTest {
     @MockBean
     private MoviesInfoService moviesInfoServiceMock;
 
+    @MockBean
+    private MovieInfoStreamHub movieInfoStreamHubMock;
+
+    @MockBean
+    private MovieInfoChangeStream movieInfoChangeStreamMock;
+
     static String MOVIES_INFO_URL = "/v1/movieinfos";
 
     @Test
@@ -41,7 +58,7 @@ public class MovieInfoControllerUnitTest {
                 new MovieInfo("abc", "Dark Knight Rises",
                         2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
 
-        Mockito.when(moviesInfoServiceMock.getAllMovieInfos())
+        Mockito.when(moviesInfoServiceMock.getMovieInfos(null, 101, null))
                 .thenReturn(Flux.fromIterable(movieInfoList));
 
         webTestClient.get()
@@ -49,11 +66,226 @@ public class MovieInfoControllerUnitTest {
                 .exchange()
                 .expectStatus()
                 .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectHeader()
+                .doesNotExist("X-Next-Cursor")
                 .expectBodyList(MovieInfo.class)
                 .hasSize(3);
     }
 
+    @Test
+    void getAllMoviesInfo_paged() {
+        var movieInfoList = List.of(new MovieInfo("abc", "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("def", "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("ghi", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        Mockito.when(moviesInfoServiceMock.getMovieInfos("aaa", 3, null))
+                .thenReturn(Flux.fromIterable(movieInfoList));
+
+        var uri = UriComponentsBuilder.fromUriString(MOVIES_INFO_URL)
+                .queryParam("after", "aaa")
+                .queryParam("size", 2)
+                .buildAndExpand()
+                .toUri();
+
+        webTestClient.get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals("X-Next-Cursor", "def")
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getAllMoviesInfo_fields() {
+        var movieInfoList = List.of(new MovieInfo("abc", "Batman Begins", null, null, null),
+                new MovieInfo("def", "The Dark Knight", null, null, null));
+
+        Mockito.when(moviesInfoServiceMock.getMovieInfos(null, 101, List.of("name")))
+                .thenReturn(Flux.fromIterable(movieInfoList));
+
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL + "?fields=name")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].name").isEqualTo("Batman Begins")
+                .jsonPath("$[0].cast").doesNotExist()
+                .jsonPath("$[0].release_date").doesNotExist();
+    }
+
+    @Test
+    void streamAllMoviesInfo() {
+        var movieInfoList = List.of(new MovieInfo(null, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")));
+
+        Mockito.when(moviesInfoServiceMock.getAllMovieInfos(null))
+                .thenReturn(Flux.fromIterable(movieInfoList));
+
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void streamAllMoviesInfo_idsAndFields() {
+        var movieInfoList = List.of(new MovieInfo("abc", "Batman Begins", null, null, null),
+                new MovieInfo("def", "The Dark Knight", null, null, null));
+
+        Mockito.when(moviesInfoServiceMock.getMovieInfosByIds(List.of("abc", "def"), List.of("name")))
+                .thenReturn(Flux.fromIterable(movieInfoList));
+
+        // NDJSON 목록도 JSON 목록과 같은 ids / fields 를 받는다
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL + "?ids=abc,def&fields=name")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+
+        Mockito.verify(moviesInfoServiceMock).getMovieInfosByIds(List.of("abc", "def"), List.of("name"));
+    }
+
+    @Test
+    void streamAllMoviesInfo_yearAndFields() {
+        Mockito.when(moviesInfoServiceMock.getMovieInfoByYear(2005, List.of("name", "year")))
+                .thenReturn(Flux.just(new MovieInfo("abc", "Batman Begins", 2005, null, null)));
+
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL + "?year=2005&fields=name,year")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
 
+        Mockito.verify(moviesInfoServiceMock).getMovieInfoByYear(2005, List.of("name", "year"));
+    }
+
+    @Test
+    void streamMovieInfos_sse() {
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        Mockito.when(movieInfoStreamHubMock.subscribe(MovieInfoStreamFilter.ALL))
+                .thenReturn(Flux.just(new MovieInfoStreamEvent("token1", movieInfo), MovieInfoStreamEvent.heartbeat()));
+
+        var body = webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        // resume token 은 event id, heartbeat 는 comment 로 나간다
+        Assertions.assertNotNull(body);
+        Assertions.assertTrue(body.contains("id:token1\n"), body);
+        Assertions.assertTrue(body.contains("\"movieInfoId\":\"abc\""), body);
+        Assertions.assertTrue(body.contains(":heartbeat\n"), body);
+    }
+
+    @Test
+    void streamMovieInfos_ndjson() {
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        Mockito.when(movieInfoStreamHubMock.subscribe(MovieInfoStreamFilter.ALL))
+                .thenReturn(Flux.just(new MovieInfoStreamEvent(null, movieInfo), MovieInfoStreamEvent.heartbeat()));
+
+        // Accept 가 없으면 NDJSON, heartbeat 는 {}
+        var body = webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        Assertions.assertNotNull(body);
+        Assertions.assertTrue(body.endsWith("\n{}\n"), body);
+    }
+
+    @Test
+    void streamMovieInfos_filter() {
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+        var filter = MovieInfoStreamFilter.of(List.of("abc", "def"), List.of(2012), null);
+
+        Mockito.when(movieInfoStreamHubMock.subscribe(filter))
+                .thenReturn(Flux.just(new MovieInfoStreamEvent(null, movieInfo)));
+
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/stream?ids=abc,def&year=2012")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void streamMovieInfos_resumeWithoutChangeStream() {
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", "8263A1")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getMovieInfosByIds() {
+        var movieInfoList = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("def", "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")));
+
+        Mockito.when(moviesInfoServiceMock.getMovieInfosByIds(List.of("abc", "def"), null))
+                .thenReturn(Flux.fromIterable(movieInfoList));
+
+        var uri = UriComponentsBuilder.fromUriString(MOVIES_INFO_URL)
+                .queryParam("ids", "abc,def")
+                .buildAndExpand()
+                .toUri();
+
+        webTestClient.get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
 
     @Test
     void getMovieInfoById() {
@@ -76,6 +308,72 @@ public class MovieInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void getMovieInfoById_deadline() {
+        // Mongo 조회가 끝나지 않는 상황
+        Mockito.when(moviesInfoServiceMock.getMovieInfo("abc"))
+                .thenReturn(Mono.never());
+
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .header("X-Deadline-Ms", "50")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(504);
+    }
+
+    @Test
+    void streamAllMoviesInfo_deadlineAfterCommit() {
+        // 첫 movieInfo 를 보낸 뒤(응답 commit 후) deadline 보다 늦게 나머지가 온다
+        var movieInfoFlux = Flux.concat(
+                Flux.just(new MovieInfo("abc", "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))),
+                Mono.delay(Duration.ofMillis(300)).thenMany(Flux.just(new MovieInfo("def", "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")))));
+
+        Mockito.when(moviesInfoServiceMock.getAllMovieInfos(null))
+                .thenReturn(movieInfoFlux);
+
+        // 이미 쓰기 시작한 stream 은 deadline 으로 끊지 않는다
+        webTestClient.get()
+                .uri(MOVIES_INFO_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .header("X-Deadline-Ms", "100")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getMovieInfoEvents() {
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        Mockito.when(moviesInfoServiceMock.getMovieInfoEvents())
+                .thenReturn(Flux.just(MovieInfoEvent.created(movieInfo), MovieInfoEvent.deleted("abc")));
+
+        var eventFlux = webTestClient.get()
+                .uri(MOVIES_INFO_URL + "/events")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoEvent.class)
+                .getResponseBody();
+
+        StepVerifier.create(eventFlux)
+                .assertNext(event -> {
+                    assert event.getType() == MovieInfoEvent.Type.CREATED;
+                    assert event.getMovieInfo().getName().equals(movieInfo.getName());
+                })
+                .assertNext(event -> {
+                    assert event.getType() == MovieInfoEvent.Type.DELETED;
+                    assert event.getMovieInfoId().equals("abc");
+                })
+                .verifyComplete();
+    }
+
     @Test
     void addMovieInfo() {
         // given
@@ -0,0 +1,115 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfoEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieInfoEventPublisherTest {
+
+    SimpleMeterRegistry meterRegistry;
+    MovieInfoEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        publisher = new MovieInfoEventPublisher(3, meterRegistry);
+    }
+
+    @Test
+    void slowSubscriberFeedIsClosed() {
+        // then : 이벤트를 조용히 버리지 않고 stream 을 끝낸다 (구독자는 캐시를 비우고 재연결)
+        StepVerifier.create(publisher.events(), 0)
+                .then(() -> {
+                    for (var i = 0; i < 5; i++) {
+                        publisher.publish(MovieInfoEvent.deleted("id" + i));
+                    }
+                })
+                .thenRequest(10)
+                .expectNextCount(3)
+                .verifyComplete();
+        assertEquals(1, meterRegistry.get("movieinfos.events.overflow").counter().count());
+    }
+
+    @Test
+    void otherSubscribersUnaffected() {
+        var fast = new ArrayList<MovieInfoEvent>();
+        publisher.events().subscribe(fast::add);
+
+        StepVerifier.create(publisher.events(), 0)
+                .then(() -> {
+                    for (var i = 0; i < 5; i++) {
+                        publisher.publish(MovieInfoEvent.deleted("id" + i));
+                    }
+                })
+                .thenRequest(10)
+                .expectNextCount(3)
+                .verifyComplete();
+        assertEquals(5, fast.size());
+    }
+
+    @Test
+    void reset() {
+        var before = new ArrayList<MovieInfoEvent>();
+        var completed = new AtomicBoolean();
+        publisher.events().doOnComplete(() -> completed.set(true)).subscribe(before::add);
+        publisher.publish(MovieInfoEvent.deleted("a"));
+
+        // when : 놓친 변경이 있어서 feed 를 끊는다
+        publisher.reset();
+
+        // then : 기존 구독자는 끝나고 (캐시를 비우고 재구독), 새 구독자는 계속 받는다
+        assertTrue(completed.get());
+        StepVerifier.create(publisher.events())
+                .then(() -> publisher.publish(MovieInfoEvent.deleted("b")))
+                .assertNext(event -> assertEquals("b", event.getMovieInfoId()))
+                .thenCancel()
+                .verify();
+        assertEquals(1, before.size());
+    }
+
+    @Test
+    void concurrentPublish() throws InterruptedException {
+        // given
+        publisher = new MovieInfoEventPublisher(100_000, meterRegistry);
+        var received = Collections.synchronizedList(new ArrayList<MovieInfoEvent>());
+        var subscription = publisher.events().subscribe(received::add);
+        var producers = 8;
+        var perProducer = 2000;
+        var executor = Executors.newFixedThreadPool(producers);
+        var start = new CountDownLatch(1);
+
+        // when
+        for (var p = 0; p < producers; p++) {
+            var producer = p;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (var i = 0; i < perProducer; i++) {
+                    publisher.publish(MovieInfoEvent.deleted(producer + "-" + i));
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // then : 재시도 spin 없이 유실 없음
+        subscription.dispose();
+        assertEquals(producers * perProducer, received.size());
+    }
+}
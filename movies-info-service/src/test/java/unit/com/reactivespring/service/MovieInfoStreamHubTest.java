@@ -0,0 +1,434 @@
+package com.reactivespring.service;
+
+import com.reactivespring.config.MovieInfoStreamProperties;
+import com.reactivespring.config.MovieInfoStreamProperties.OverflowPolicy;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoStreamEvent;
+import com.reactivespring.domain.MovieInfoStreamFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieInfoStreamHubTest {
+
+    MovieInfoStreamProperties properties;
+    SimpleMeterRegistry meterRegistry;
+    MovieInfoStreamHub hub;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MovieInfoStreamProperties();
+        properties.setBufferSize(3);
+        properties.setHeartbeatInterval(Duration.ofHours(1));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.dispose();
+    }
+
+    private MovieInfoStreamHub hub(OverflowPolicy overflowPolicy) {
+        properties.setOverflowPolicy(overflowPolicy);
+        hub = new MovieInfoStreamHub(properties, meterRegistry);
+        return hub;
+    }
+
+    private static MovieInfo movieInfo(String id, String name) {
+        return new MovieInfo(id, name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("movieinfos.stream.dropped").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void replayLatest() {
+        // given
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        hub.publish(movieInfo("a", "first"));
+        hub.publish(movieInfo("b", "second"));
+
+        // then
+        StepVerifier.create(hub.subscribe())
+                .assertNext(event -> assertEquals("b", event.getMovieInfo().getMovieInfoId()))
+                .then(() -> hub.publish(movieInfo("c", "third")))
+                .assertNext(event -> assertEquals("c", event.getMovieInfo().getMovieInfoId()))
+                .thenCancel()
+                .verify();
+        assertEquals(0, meterRegistry.get("movieinfos.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void dropOldest() {
+        // given
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+
+        // when : demand 가 없는 동안 buffer 보다 많이 publish
+        StepVerifier.create(hub.subscribe(), 0)
+                .then(() -> {
+                    for (int i = 0; i < 5; i++) {
+                        hub.publish(movieInfo("id" + i, "name" + i));
+                    }
+                })
+                .thenRequest(10)
+                // then
+                .assertNext(event -> assertEquals("id2", event.getMovieInfo().getMovieInfoId()))
+                .assertNext(event -> assertEquals("id3", event.getMovieInfo().getMovieInfoId()))
+                .assertNext(event -> assertEquals("id4", event.getMovieInfo().getMovieInfoId()))
+                .thenCancel()
+                .verify();
+        assertEquals(2, dropped("drop_oldest"));
+    }
+
+    @Test
+    void conflate() {
+        // given
+        var hub = hub(OverflowPolicy.CONFLATE);
+
+        // when
+        StepVerifier.create(hub.subscribe(), 0)
+                .then(() -> {
+                    hub.publish(movieInfo("a", "v1"));
+                    hub.publish(movieInfo("b", "v1"));
+                    hub.publish(movieInfo("a", "v2"));
+                    hub.publish(movieInfo("a", "v3"));
+                })
+                .thenRequest(10)
+                // then : a 는 처음 자리에 최신 값으로
+                .assertNext(event -> assertEquals("v3", event.getMovieInfo().getName()))
+                .assertNext(event -> assertEquals("b", event.getMovieInfo().getMovieInfoId()))
+                .thenCancel()
+                .verify();
+        assertEquals(2, dropped("conflated"));
+    }
+
+    @Test
+    void disconnect() {
+        // given
+        var hub = hub(OverflowPolicy.DISCONNECT);
+        var fast = hub.subscribe();
+
+        // when
+        StepVerifier.create(hub.subscribe(), 0)
+                .then(() -> {
+                    for (int i = 0; i < 4; i++) {
+                        hub.publish(movieInfo("id" + i, "name" + i));
+                    }
+                })
+                // then : 느린 구독자만 끊긴다
+                .verifyComplete();
+        assertEquals(1, dropped("disconnected"));
+
+        StepVerifier.create(fast)
+                .assertNext(event -> assertEquals("id3", event.getMovieInfo().getMovieInfoId()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void heartbeat() {
+        // given
+        properties.setHeartbeatInterval(Duration.ofMillis(100));
+        var hub = hub(OverflowPolicy.CONFLATE);
+
+        // then
+        StepVerifier.create(hub.subscribe())
+                .assertNext(event -> assertNull(event.getMovieInfo()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void lagMetrics() {
+        // given
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+
+        // when
+        StepVerifier.create(hub.subscribe(), 0)
+                .then(() -> {
+                    hub.publish(movieInfo("a", "v1"));
+                    hub.publish(movieInfo("b", "v1"));
+                    hub.tick();
+                })
+                // then : tick 은 dispatch worker 에서 publish 다음에 실행된다
+                .then(() -> awaitUntil(() -> meterRegistry.get("movieinfos.stream.subscriber.lag").summary().count() == 1))
+                .thenCancel()
+                .verify();
+        assertEquals(2, meterRegistry.get("movieinfos.stream.subscriber.lag.max").gauge().value());
+    }
+
+    @Test
+    void publish_concurrentProducers() throws Exception {
+        // given
+        var producers = 8;
+        var perProducer = 5_000;
+        var total = producers * perProducer;
+        properties.setBufferSize(total);
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        var received = new ConcurrentLinkedQueue<MovieInfo>();
+        var receivedCount = new AtomicInteger();
+        var done = new CountDownLatch(1);
+        var subscription = hub.subscribe()
+                .map(MovieInfoStreamEvent::getMovieInfo)
+                .subscribe(movieInfo -> {
+                    received.add(movieInfo);
+                    if (receivedCount.incrementAndGet() == total) {
+                        done.countDown();
+                    }
+                });
+
+        // when : 여러 스레드에서 동시에 publish
+        var executor = Executors.newFixedThreadPool(producers);
+        var start = new CountDownLatch(1);
+        try {
+            for (int p = 0; p < producers; p++) {
+                var producer = p;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        hub.publish(movieInfo(producer + "-" + i, String.valueOf(i)));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+
+            // then : 하나도 빠지지 않고, producer 별 순서도 유지된다
+            assertTrue(done.await(30, TimeUnit.SECONDS), "received " + receivedCount.get() + " of " + total);
+        } finally {
+            executor.shutdownNow();
+            subscription.dispose();
+        }
+
+        var lastByProducer = new HashMap<String, Integer>();
+        for (var movieInfo : received) {
+            var producer = movieInfo.getMovieInfoId().substring(0, movieInfo.getMovieInfoId().indexOf('-'));
+            var sequence = Integer.parseInt(movieInfo.getName());
+            var previous = lastByProducer.put(producer, sequence);
+            assertEquals(previous == null ? 0 : previous + 1, sequence);
+        }
+        assertEquals(total, received.size());
+        assertEquals(0, dropped("drop_oldest"));
+        assertEquals(total, meterRegistry.get("movieinfos.stream.emit").tag("result", "ok").counter().count());
+    }
+
+    @Test
+    void publish_doesNotWaitForSubscribers() throws Exception {
+        // given : 받을 때마다 5ms 씩 걸리는 구독자 200 명
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        var subscriberCount = 200;
+        var delivered = new CountDownLatch(subscriberCount);
+        var subscriptions = Disposables.composite();
+        for (int i = 0; i < subscriberCount; i++) {
+            subscriptions.add(hub.subscribe().subscribe(event -> {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                delivered.countDown();
+            }));
+        }
+
+        // when
+        var start = System.nanoTime();
+        hub.publish(movieInfo("a", "v1"));
+        var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // then : publish 한 스레드에서 전달하면 200 x 5ms 이상 걸린다
+        try {
+            assertTrue(elapsedMillis < 100, "publish took " + elapsedMillis + "ms");
+            assertTrue(delivered.await(10, TimeUnit.SECONDS), "delivered to " + (subscriberCount - delivered.getCount()));
+        } finally {
+            subscriptions.dispose();
+        }
+    }
+
+    @Test
+    void publish_afterDispose() {
+        // given
+        var hub = hub(OverflowPolicy.CONFLATE);
+        hub.dispose();
+
+        // when
+        var result = hub.publish(movieInfo("a", "v1"));
+
+        // then
+        assertEquals(Sinks.EmitResult.FAIL_TERMINATED, result);
+        assertEquals(1, meterRegistry.get("movieinfos.stream.emit").tag("result", "fail_terminated").counter().count());
+    }
+
+    @Test
+    void subscribe_filter() {
+        // given
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        var byIds = hub.subscribe(MovieInfoStreamFilter.of(List.of("a", "c"), null, null));
+        // 같은 구독자의 cast 가 여러 명 걸려도 한 번만 받는다
+        var byCastAndYear = hub.subscribe(MovieInfoStreamFilter.of(null, List.of(2008), List.of("Christian Bale", "Heath Ledger")));
+        var all = hub.subscribe();
+
+        var a = new MovieInfo("a", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+        var b = new MovieInfo("b", "The Dark Knight", 2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"));
+        var c = new MovieInfo("c", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+        var d = new MovieInfo("d", "Memento", 2000, null, LocalDate.parse("2000-09-05"));
+
+        // then
+        StepVerifier.create(byIds.map(event -> event.getMovieInfo().getMovieInfoId()))
+                .then(() -> List.of(a, b, c, d).forEach(hub::publish))
+                .expectNext("a", "c")
+                .thenCancel()
+                .verify();
+        StepVerifier.create(byCastAndYear.map(event -> event.getMovieInfo().getMovieInfoId()))
+                .then(() -> List.of(a, b, c, d).forEach(hub::publish))
+                .expectNext("b")
+                .thenCancel()
+                .verify();
+        StepVerifier.create(all.map(event -> event.getMovieInfo().getMovieInfoId()))
+                .expectNext("d")    // 구독 시점의 latest
+                .then(() -> List.of(a, b, c, d).forEach(hub::publish))
+                .expectNext("a", "b", "c", "d")
+                .thenCancel()
+                .verify();
+    }
+
+    private static MovieInfoStreamEvent changed(String token, String id) {
+        return new MovieInfoStreamEvent(token, movieInfo(id, "name " + id));
+    }
+
+    @Test
+    void resume_fromRecent() {
+        // given
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        hub.publish(changed("01", "a"));
+        hub.publish(changed("02", "b"));
+        hub.publish(changed("03", "c"));
+        var replayOpened = new AtomicInteger();
+
+        // then : hub 가 최근에 publish 한 token 이면 change stream 을 열지 않는다
+        StepVerifier.create(hub.resume(MovieInfoStreamFilter.ALL, "01", token -> {
+                    replayOpened.incrementAndGet();
+                    return Flux.never();
+                }).map(event -> event.getMovieInfo().getMovieInfoId()))
+                .expectNext("b", "c")
+                .then(() -> hub.publish(changed("04", "d")))
+                .expectNext("d")
+                .thenCancel()
+                .verify();
+        assertEquals(0, replayOpened.get());
+    }
+
+    @Test
+    void resume_afterClearRecent() {
+        // given
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        hub.publish(changed("01", "a"));
+        hub.publish(changed("02", "b"));
+        hub.clearRecent();
+        var replayOpened = new AtomicInteger();
+
+        // then : change stream 이 놓친 구간이 있으면 그 이전 token 은 replay 로 확인한다 (oplog 에 없으면 410)
+        StepVerifier.create(hub.resume(MovieInfoStreamFilter.ALL, "01", token -> {
+                    replayOpened.incrementAndGet();
+                    return Flux.error(new ResponseStatusException(HttpStatus.GONE));
+                }))
+                .expectErrorSatisfies(ex -> assertEquals(HttpStatus.GONE, ((ResponseStatusException) ex).getStatus()))
+                .verify();
+        assertEquals(1, replayOpened.get());
+    }
+
+    @Test
+    void resume_replayUntilHub() {
+        // given
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        hub.publish(changed("05", "e"));
+        hub.publish(changed("06", "f"));
+        var replay = Sinks.many().unicast().<MovieInfoStreamEvent>onBackpressureBuffer();
+
+        // then : 오래된 token 은 replay 로 받다가 hub 가 publish 한 위치에 닿으면 replay 를 닫고 hub 에서 받는다
+        StepVerifier.create(hub.resume(MovieInfoStreamFilter.ALL, "01", token -> replay.asFlux())
+                        .map(event -> event.getMovieInfo().getMovieInfoId()))
+                .then(() -> {
+                    replay.tryEmitNext(changed("02", "b"));
+                    replay.tryEmitNext(changed("05", "e"));
+                })
+                .expectNext("b", "e", "f")
+                .then(() -> assertEquals(0, meterRegistry.get("movieinfos.stream.resume.cursors").gauge().value()))
+                .then(() -> {
+                    replay.tryEmitNext(changed("06", "f"));
+                    hub.publish(changed("07", "g"));
+                })
+                .expectNext("g")
+                .thenCancel()
+                .verify();
+        assertEquals(0, replay.currentSubscriberCount());
+    }
+
+    @Test
+    void resume_replayAheadOfHub() {
+        // given
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        var replay = Sinks.many().unicast().<MovieInfoStreamEvent>onBackpressureBuffer();
+
+        // then : replay 가 hub 보다 먼저 받은 항목은 hub 가 같은 항목을 publish 할 때 넘어가므로 중복 없이 받는다
+        StepVerifier.create(hub.resume(MovieInfoStreamFilter.of(List.of("a", "b", "c"), null, null), "01", token -> replay.asFlux())
+                        .map(event -> event.getMovieInfo().getMovieInfoId()))
+                .then(() -> replay.tryEmitNext(changed("02", "a")))
+                .expectNext("a")
+                .then(() -> {
+                    hub.publish(changed("02", "a"));
+                    hub.publish(changed("03", "x"));
+                    hub.publish(changed("04", "b"));
+                    replay.tryEmitNext(changed("03", "x"));
+                    replay.tryEmitNext(changed("04", "b"));
+                    hub.publish(changed("05", "c"));
+                })
+                .expectNext("b", "c")
+                .thenCancel()
+                .verify();
+        assertEquals(0, replay.currentSubscriberCount());
+    }
+
+    @Test
+    void resume_maxCursors() {
+        // given
+        properties.setMaxResumeCursors(1);
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        var first = hub.resume(MovieInfoStreamFilter.ALL, "01", token -> Flux.never()).subscribe();
+
+        // then
+        StepVerifier.create(hub.resume(MovieInfoStreamFilter.ALL, "01", token -> Flux.never()))
+                .expectErrorSatisfies(ex -> assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                        ((ResponseStatusException) ex).getStatus()))
+                .verify();
+        first.dispose();
+        assertEquals(0, meterRegistry.get("movieinfos.stream.resume.cursors").gauge().value());
+    }
+}
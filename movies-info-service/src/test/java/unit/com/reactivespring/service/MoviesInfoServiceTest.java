@@ -0,0 +1,51 @@
+package com.reactivespring.service;
+
+import com.reactivespring.config.MovieInfoStreamProperties;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.mockito.Mockito.*;
+
+class MoviesInfoServiceTest {
+
+    MovieInfoRepository movieInfoRepository;
+    MovieInfoEventPublisher movieInfoEventPublisher;
+    MoviesInfoService moviesInfoService;
+
+    @BeforeEach
+    void setUp() {
+        movieInfoRepository = mock(MovieInfoRepository.class);
+        movieInfoEventPublisher = mock(MovieInfoEventPublisher.class);
+        moviesInfoService = new MoviesInfoService(movieInfoRepository, movieInfoEventPublisher, new MovieInfoStreamProperties());
+    }
+
+    @Test
+    void deleteMovieInfo() {
+        // given
+        when(movieInfoRepository.deleteByMovieInfoId("abc")).thenReturn(Mono.just(1L));
+
+        // when
+        StepVerifier.create(moviesInfoService.deleteMovieInfo("abc"))
+                .verifyComplete();
+
+        // then
+        verify(movieInfoEventPublisher).publish(MovieInfoEvent.deleted("abc"));
+    }
+
+    @Test
+    void deleteMovieInfo_notFound() {
+        // given : 없는 id 이거나 다른 요청이 먼저 삭제함
+        when(movieInfoRepository.deleteByMovieInfoId("abc")).thenReturn(Mono.just(0L));
+
+        // when
+        StepVerifier.create(moviesInfoService.deleteMovieInfo("abc"))
+                .verifyComplete();
+
+        // then : movies-service 캐시 무효화 이벤트를 보내지 않는다
+        verifyNoInteractions(movieInfoEventPublisher);
+    }
+}
@@ -0,0 +1,63 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+// reactive repository 호출을 구독 시점부터 완료 / 에러 / 취소까지 repository.invocations timer 로 기록한다
+// tag : repository, method, outcome(success, error, cancelled)
+public class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+    static final String METRIC_NAME = "repository.invocations";
+
+    private final MeterRegistry meterRegistry;
+    private final String repository;
+
+    public RepositoryMetricsInterceptor(MeterRegistry meterRegistry, Class<?> repositoryInterface) {
+        this.meterRegistry = meterRegistry;
+        this.repository = repositoryInterface.getSimpleName();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        var result = invocation.proceed();
+        var method = invocation.getMethod().getName();
+
+        if (result instanceof Mono) {
+            return Mono.defer(() -> {
+                var sample = Timer.start(meterRegistry);
+                return ((Mono<?>) result).doFinally(signal -> sample.stop(timer(method, signal)));
+            });
+        }
+        if (result instanceof Flux) {
+            return Flux.defer(() -> {
+                var sample = Timer.start(meterRegistry);
+                return ((Flux<?>) result).doFinally(signal -> sample.stop(timer(method, signal)));
+            });
+        }
+        return result;
+    }
+
+    private Timer timer(String method, SignalType signal) {
+        return Timer.builder(METRIC_NAME)
+                .tag("repository", repository)
+                .tag("method", method)
+                .tag("outcome", outcome(signal))
+                .register(meterRegistry);
+    }
+
+    private static String outcome(SignalType signal) {
+        switch (signal) {
+            case ON_COMPLETE:
+                return "success";
+            case ON_ERROR:
+                return "error";
+            default:
+                return "cancelled";
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.reactivespring.config;
+
+import com.reactivespring.repository.ReviewSummaryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// ReviewSummary 가 생기기 전에 저장된 review 들의 summary 를 reviews 컬렉션 aggregate 로 한 번 다시 만든다
+// 끝나면 migrations 컬렉션에 표시를 남기므로 한 번만 실행되고, replica 여러 대가 동시에 떠도 표시를 먼저 넣은 한 대만 실행한다
+// (실패하면 표시를 지워서 다음 기동 때 다시 실행한다)
+@Slf4j
+@Component
+public class ReviewSummaryBackfill {
+
+    static final String MIGRATIONS = "migrations";
+    static final String MIGRATION_ID = "review-summary-backfill-v1";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ReviewSummaryRepository reviewSummaryRepository;
+
+    @Value("${reviews.summary.backfill-enabled:true}")
+    private boolean enabled;
+
+    public ReviewSummaryBackfill(ReactiveMongoTemplate reactiveMongoTemplate, ReviewSummaryRepository reviewSummaryRepository) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.reviewSummaryRepository = reviewSummaryRepository;
+    }
+
+    // 이미 떠 있는 다른 replica 가 저장하는 review 는 집계와 덮어쓰기 사이에 들어오면 빠질 수 있으므로 배포 직후 한 번만 돌린다
+    // (그 뒤에 summary 가 실제보다 작아 빼는 갱신이 0 아래로 내려가면 ReviewSummaryRepository 가 그 movie 를 다시 집계한다)
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        var marker = new Document("_id", MIGRATION_ID).append("startedAt", new Date());
+
+        reactiveMongoTemplate.insert(marker, MIGRATIONS)
+                .flatMap(inserted -> reviewSummaryRepository.rebuildAll()
+                        .count()
+                        .doOnNext(count -> log.info("Rebuilt {} review summaries", count))
+                        .onErrorResume(ex -> reactiveMongoTemplate.remove(new Query(where("_id").is(MIGRATION_ID)), MIGRATIONS)
+                                .then(Mono.error(ex))))
+                .onErrorResume(DuplicateKeyException.class, ex -> {
+                    log.debug("review summary backfill already done");
+                    return Mono.empty();
+                })
+                .doOnError(ex -> log.error("review summary backfill failed, will retry on next startup", ex))
+                .onErrorResume(ex -> Mono.empty())
+                .block();
+    }
+}
@@ -1,9 +1,11 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Min;
@@ -11,9 +13,13 @@ import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @AllArgsConstructor
 @NoArgsConstructor
 @Document
+// movieInfoId 로 조회 + reviewId(_id) 순 cursor pagination, rating 순 min/max 재계산(ReviewSummary) 용 복합 인덱스
+@CompoundIndex(name = "movieInfoId_reviewId", def = "{'movieInfoId': 1, '_id': 1}")
+@CompoundIndex(name = "movieInfoId_rating", def = "{'movieInfoId': 1, 'rating': 1}")
 public class Review {
     @Id
     private String reviewId;
@@ -0,0 +1,48 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Transient;
+
+// /v1/reviews/stream 으로 나가는 review 생성/수정/삭제 이벤트
+// sequence 는 publish 순서대로 1 씩 증가하고, position("{epoch}-{sequence}") 을 after / Last-Event-ID 로 넘기면 그 다음부터 이어서 받는다
+// (epoch 는 서버가 뜰 때마다 바뀌므로 재시작 전의 position 은 410)
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    // sequence / position 은 구독자에게 보낼 때 hub 가 매긴다 (review_events 컬렉션에는 저장하지 않는다)
+    @Transient
+    private long sequence;
+    @Transient
+    private String position;
+    private Type type;
+    private Long movieInfoId;
+    private String reviewId;
+    // DELETED 이벤트는 삭제된 review
+    private Review review;
+
+    public static ReviewEvent created(Review review) {
+        return of(Type.CREATED, review);
+    }
+
+    public static ReviewEvent updated(Review review) {
+        return of(Type.UPDATED, review);
+    }
+
+    public static ReviewEvent deleted(Review review) {
+        return of(Type.DELETED, review);
+    }
+
+    private static ReviewEvent of(Type type, Review review) {
+        return new ReviewEvent(0, null, type, review.getMovieInfoId(), review.getReviewId(), review);
+    }
+}
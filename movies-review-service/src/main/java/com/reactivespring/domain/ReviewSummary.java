@@ -0,0 +1,30 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+
+// movieInfoId 별 review 집계 (review 추가/수정/삭제 시 증분으로 갱신)
+// ratingHistogram 의 key 는 rating 의 정수 부분 (8.5 -> "8")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewSummary {
+    @Id
+    private Long movieInfoId;
+    private long reviewCount;
+    private long ratingCount;
+    private double ratingSum;
+    private Double minRating;
+    private Double maxRating;
+    private Map<String, Long> ratingHistogram;
+
+    public Double getAverageRating() {
+        return ratingCount == 0 ? null : ratingSum / ratingCount;
+    }
+}
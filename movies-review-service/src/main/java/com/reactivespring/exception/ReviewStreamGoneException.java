@@ -0,0 +1,9 @@
+package com.reactivespring.exception;
+
+public class ReviewStreamGoneException extends RuntimeException {
+    private String message;
+    public ReviewStreamGoneException(String s) {
+        super(s);
+        this.message=s;
+    }
+}
@@ -1,7 +1,9 @@
 package com.reactivespring.exceptionhandler;
 
+import com.reactivespring.exception.DeadlineExceededException;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.exception.ReviewStreamGoneException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
 import org.springframework.core.io.buffer.DataBufferFactory;
@@ -29,6 +31,16 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
             return exchange.getResponse().writeWith(Mono.just(errorMessage));
         }
 
+        if(ex instanceof ReviewStreamGoneException){
+            exchange.getResponse().setStatusCode(HttpStatus.GONE);
+            return exchange.getResponse().writeWith(Mono.just(errorMessage));
+        }
+
+        if(ex instanceof DeadlineExceededException){
+            exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+            return exchange.getResponse().writeWith(Mono.just(errorMessage));
+        }
+
         exchange.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
         return exchange.getResponse().writeWith(Mono.just(errorMessage));
     }
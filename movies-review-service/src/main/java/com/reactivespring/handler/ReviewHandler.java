@@ -1,11 +1,22 @@
 package com.reactivespring.handler;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
+import com.reactivespring.service.ReviewEventChangeStream;
+import com.reactivespring.service.ReviewStreamHub;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
@@ -14,25 +25,57 @@ import reactor.core.publisher.Mono;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 
 @Component
 @Slf4j
 public class ReviewHandler {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final Set<String> PROJECTABLE_FIELDS = Set.of("reviewId", "movieInfoId", "comment", "rating");
+
     private final ReviewReactiveRepository reviewReactiveRepository;
+    private final ReviewSummaryRepository reviewSummaryRepository;
     private final Validator validator;
+    private final ReviewStreamHub reviewStreamHub;
+    private final ReviewEventChangeStream reviewEventChangeStream;
+
+    @Value("${reviews.page.default-size:100}")
+    private int defaultPageSize;
 
-    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository, Validator validator) {
+    @Value("${reviews.page.max-size:1000}")
+    private int maxPageSize;
+
+    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository,
+                         ReviewSummaryRepository reviewSummaryRepository,
+                         Validator validator,
+                         ReviewStreamHub reviewStreamHub,
+                         ReviewEventChangeStream reviewEventChangeStream) {
         this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewSummaryRepository = reviewSummaryRepository;
         this.validator = validator;
+        this.reviewStreamHub = reviewStreamHub;
+        this.reviewEventChangeStream = reviewEventChangeStream;
     }
 
     public Mono<ServerResponse> addReview(ServerRequest request) {
         return request.bodyToMono(Review.class)
                 .doOnNext(this::validate)
                 .flatMap(reviewReactiveRepository::save)
+                .flatMap(savedReview -> reviewSummaryRepository.addReview(savedReview)
+                        .thenReturn(savedReview))
+                .flatMap(savedReview -> reviewEventChangeStream.publishCreated(savedReview)
+                        .thenReturn(savedReview))
                 .flatMap(ServerResponse.status(HttpStatus.CREATED)::bodyValue);
     }
 
@@ -52,47 +95,225 @@ public class ReviewHandler {
     }
 
 
+    // reviewId 기준 keyset pagination (movieInfoId 만 넘어와도 기본 page 크기까지만 내려준다)
+    // (size 는 reviews.page.max-size 를 넘을 수 없고, 다음 페이지가 있으면 X-Next-Cursor 헤더로 cursor 를 내려준다)
+    // 한 영화의 review 전체가 필요하면 Accept: application/x-ndjson 으로 streamReviews 를 사용한다
     public Mono<ServerResponse> getReviews(ServerRequest serverRequest) {
         var movieInfoId = serverRequest.queryParam("movieInfoId");
-        if (movieInfoId.isPresent()) {
-            var reviewFlux = reviewReactiveRepository.findReviewsByMovieInfoId(Long.valueOf(movieInfoId.get()))
-                    .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review Not Found For Given movieInfoId Id " + movieInfoId.get())));
-            return buildReviewsResponse(reviewFlux);
+        var after = serverRequest.queryParam("after");
+        var size = serverRequest.queryParam("size");
+        var fields = fields(serverRequest);
+
+        var pageSize = pageSize(size);
+        // 다음 페이지 존재 여부를 알기 위해 한 건 더 조회
+        var pageable = PageRequest.of(0, pageSize + 1, Sort.by("reviewId"));
+        Flux<Review> reviewFlux;
+        if (fields.isPresent()) {
+            var query = new Query().with(pageable);
+            movieInfoId.ifPresent(id -> query.addCriteria(where("movieInfoId").is(Long.valueOf(id))));
+            after.ifPresent(cursor -> query.addCriteria(where("reviewId").gt(cursor)));
+            reviewFlux = reviewReactiveRepository.findProjected(query, fields.get());
+        } else if (movieInfoId.isPresent()) {
+            var id = Long.valueOf(movieInfoId.get());
+            reviewFlux = after.isPresent()
+                    ? reviewReactiveRepository.findReviewsByMovieInfoIdAndReviewIdGreaterThan(id, after.get(), pageable)
+                    : reviewReactiveRepository.findReviewsByMovieInfoId(id, pageable);
         } else {
-            var reviewFlux = reviewReactiveRepository.findAll();
-            return buildReviewsResponse(reviewFlux);
+            reviewFlux = after.isPresent()
+                    ? reviewReactiveRepository.findByReviewIdGreaterThan(after.get(), pageable)
+                    : reviewReactiveRepository.findAllBy(pageable);
         }
+
+        return reviewFlux.collectList()
+                .flatMap(reviews -> {
+                    // 영화의 첫 페이지가 비어 있으면 기존처럼 404 (이후 페이지는 빈 배열)
+                    if (reviews.isEmpty() && movieInfoId.isPresent() && after.isEmpty()) {
+                        return Mono.error(new ReviewNotFoundException("Review Not Found For Given movieInfoId Id " + movieInfoId.get()));
+                    }
+                    var response = ServerResponse.ok();
+                    if (reviews.size() > pageSize) {
+                        reviews = reviews.subList(0, pageSize);
+                        response.header(NEXT_CURSOR_HEADER, reviews.get(pageSize - 1).getReviewId());
+                    }
+                    return response.bodyValue(reviews);
+                });
     }
 
-    private static Mono<ServerResponse> buildReviewsResponse(Flux<Review> reviewFlux) {
-        return ServerResponse.ok().body(reviewFlux, Review.class);
+    // Accept: application/x-ndjson 요청은 전체 결과를 한 번에 모으지 않고 client 의 demand 만큼씩 stream 으로 내려준다
+    public Mono<ServerResponse> streamReviews(ServerRequest serverRequest) {
+        var movieInfoId = serverRequest.queryParam("movieInfoId").map(Long::valueOf);
+        var fields = fields(serverRequest);
+
+        Flux<Review> reviewFlux;
+        if (fields.isPresent()) {
+            var query = new Query();
+            movieInfoId.ifPresent(id -> query.addCriteria(where("movieInfoId").is(id)));
+            reviewFlux = reviewReactiveRepository.findProjected(query, fields.get());
+        } else {
+            reviewFlux = movieInfoId
+                    .map(reviewReactiveRepository::findReviewsByMovieInfoId)
+                    .orElseGet(reviewReactiveRepository::findAll);
+        }
+
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reviewFlux, Review.class);
+    }
+
+    // movieInfoId(여러 개면 movieInfoId=1,2) 의 review 생성/수정/삭제 이벤트를 저장되는 대로 내려준다 (NDJSON / SSE)
+    // after 파라미터나 Last-Event-ID 헤더로 마지막으로 받은 position 을 넘기면 그 다음 이벤트부터 이어서 받는다
+    // (polling 하던 client 는 GET /v1/reviews 로 읽은 뒤 구독하고, 끊기면 마지막 position 으로 다시 구독한다)
+    public Mono<ServerResponse> streamReviewEvents(ServerRequest serverRequest) {
+        var movieInfoIds = serverRequest.queryParams().getOrDefault("movieInfoId", List.of())
+                .stream()
+                .flatMap(param -> Arrays.stream(param.split(",")))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (movieInfoIds.isEmpty() || !movieInfoIds.stream().allMatch(ReviewHandler::isNumeric)) {
+            return Mono.error(new ReviewDataException("movieInfoId must be present and numeric"));
+        }
+        var after = serverRequest.queryParam("after")
+                .or(() -> Optional.ofNullable(serverRequest.headers().firstHeader("Last-Event-ID")))
+                .filter(position -> !position.isBlank())
+                .orElse(null);
+
+        var eventFlux = reviewStreamHub.subscribe(movieInfoIds.stream().map(Long::valueOf)
+                .collect(Collectors.toSet()), after);
+
+        var acceptSse = serverRequest.headers().accept().stream()
+                .anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype);
+        if (acceptSse) {
+            return ServerResponse.ok()
+                    .contentType(MediaType.TEXT_EVENT_STREAM)
+                    .body(eventFlux.map(event -> ServerSentEvent.builder(event)
+                            .id(event.getPosition())
+                            .event(event.getType().name())
+                            .build()), new ParameterizedTypeReference<ServerSentEvent<ReviewEvent>>() {});
+        }
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(eventFlux, ReviewEvent.class);
+    }
+
+    // fields=rating,comment 처럼 필요한 필드만 요청하면 Mongo 쿼리 단계에서 projection 한다
+    private static Optional<Set<String>> fields(ServerRequest serverRequest) {
+        var fields = serverRequest.queryParams().getOrDefault("fields", List.of())
+                .stream()
+                .flatMap(param -> Arrays.stream(param.split(",")))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        if (fields.isEmpty()) {
+            return Optional.empty();
+        }
+        if (!PROJECTABLE_FIELDS.containsAll(fields)) {
+            throw new ReviewDataException("fields must be one of " + PROJECTABLE_FIELDS);
+        }
+        return Optional.of(fields);
+    }
+
+    private int pageSize(Optional<String> size) {
+        if (size.isEmpty()) {
+            return defaultPageSize;
+        }
+        if (!isNumeric(size.get()) || Long.parseLong(size.get()) <= 0) {
+            throw new ReviewDataException("size must be a positive number");
+        }
+        return (int) Math.min(Long.parseLong(size.get()), maxPageSize);
+    }
+
+    // movieInfoIds=1,2,3 으로 넘어온 id 들의 review 를 한 번의 $in 쿼리로 조회해서 movieInfoId 별로 묶어 반환
+    // 숫자가 아닌 id 는 review 가 있을 수 없으므로 빈 목록으로 내려준다
+    public Mono<ServerResponse> getReviewsByMovieInfoIds(ServerRequest serverRequest) {
+        var movieInfoIds = serverRequest.queryParams().getOrDefault("movieInfoIds", List.of())
+                .stream()
+                .flatMap(param -> Arrays.stream(param.split(",")))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (movieInfoIds.isEmpty()) {
+            return Mono.error(new ReviewDataException("movieInfoIds must be present"));
+        }
+
+        var numericIds = movieInfoIds.stream()
+                .filter(ReviewHandler::isNumeric)
+                .map(Long::valueOf)
+                .collect(Collectors.toList());
+
+        // movieInfoId 별로 묶어야 하므로 projection 에 movieInfoId 는 항상 포함
+        var reviewFlux = fields(serverRequest)
+                .map(projection -> {
+                    projection.add("movieInfoId");
+                    return reviewReactiveRepository.findProjected(new Query(where("movieInfoId").in(numericIds)), projection);
+                })
+                .orElseGet(() -> reviewReactiveRepository.findReviewsByMovieInfoIdIn(numericIds));
+
+        return reviewFlux
+                .collectMultimap(Review::getMovieInfoId)
+                .map(reviewsByMovieInfoId -> {
+                    var result = new LinkedHashMap<String, Collection<Review>>();
+                    movieInfoIds.forEach(id -> result.put(id, isNumeric(id)
+                            ? reviewsByMovieInfoId.getOrDefault(Long.valueOf(id), List.of())
+                            : List.of()));
+                    return result;
+                })
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    // 집계 문서 한 건만 읽으므로 review 수와 상관없이 O(1)
+    public Mono<ServerResponse> getReviewSummary(ServerRequest serverRequest) {
+        var movieInfoId = serverRequest.queryParam("movieInfoId")
+                .filter(ReviewHandler::isNumeric);
+        if (movieInfoId.isEmpty()) {
+            return Mono.error(new ReviewDataException("movieInfoId must be a number"));
+        }
+
+        return reviewSummaryRepository.findById(Long.valueOf(movieInfoId.get()))
+                .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review Summary Not Found For Given movieInfoId Id " + movieInfoId.get())))
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    private static boolean isNumeric(String id) {
+        try {
+            Long.parseLong(id);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
     public Mono<ServerResponse> updateReview(ServerRequest request) {
         var reviewId = request.pathVariable("id");
-        var existingReview = reviewReactiveRepository.findById(reviewId)
-                .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review Not Found For Given Review Id " + reviewId)));
-
-        return existingReview
-                .flatMap(review -> request.bodyToMono(Review.class)
-                        .map(reqReview -> {
-                            review.setComment(reqReview.getComment());
-                            review.setRating(reqReview.getRating());
-                            return review;
-                        })
-                        .flatMap(reviewReactiveRepository::save)
-                        .flatMap(savedReview -> ServerResponse.ok().bodyValue(savedReview))
-                );
-                //.switchIfEmpty(ServerResponse.notFound().build());
+
+        // 수정 전 rating 은 수정과 같은 findAndModify 로 받아온다 (따로 조회하면 동시 수정 시 summary 가 틀어진다)
+        return request.bodyToMono(Review.class)
+                .flatMap(reqReview -> reviewReactiveRepository
+                        .updateAndGetPrevious(reviewId, reqReview.getComment(), reqReview.getRating())
+                        .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review Not Found For Given Review Id " + reviewId)))
+                        .flatMap(previous -> {
+                            var savedReview = new Review(previous.getReviewId(), previous.getMovieInfoId(),
+                                    reqReview.getComment(), reqReview.getRating());
+                            return reviewSummaryRepository
+                                    .changeRating(previous.getMovieInfoId(), previous.getRating(), savedReview.getRating())
+                                    .thenReturn(savedReview);
+                        }))
+                .flatMap(savedReview -> reviewEventChangeStream.publishUpdated(savedReview)
+                        .thenReturn(savedReview))
+                .flatMap(savedReview -> ServerResponse.ok().bodyValue(savedReview));
     }
 
     public Mono<ServerResponse> deleteReview(ServerRequest serverRequest) {
         var reviewId = serverRequest.pathVariable("id");
-        var existingReview = reviewReactiveRepository.findById(reviewId)
-                .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review Not Found For Given Review Id " + reviewId)));
 
-        return existingReview
-                .flatMap(review -> reviewReactiveRepository.deleteById(reviewId))
+        // 실제로 삭제한 요청만 summary 를 갱신하고 DELETED 를 publish 한다 (동시에 삭제하면 나머지는 404)
+        return reviewReactiveRepository.removeAndGet(reviewId)
+                .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review Not Found For Given Review Id " + reviewId)))
+                .flatMap(review -> reviewSummaryRepository.removeReview(review)
+                        .then(reviewEventChangeStream.publishDeleted(review)))
                 .then(ServerResponse.noContent().build());
     }
 }
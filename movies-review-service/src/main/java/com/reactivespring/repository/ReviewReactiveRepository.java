@@ -1,10 +1,24 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.Review;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
-public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String> {
+import java.util.Collection;
+
+public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String>, ReviewReactiveRepositoryCustom {
 
     Flux<Review> findReviewsByMovieInfoId(Long movieInfoId);
+
+    Flux<Review> findReviewsByMovieInfoIdIn(Collection<Long> movieInfoIds);
+
+    // keyset(cursor) pagination : reviewId 순으로 정렬해서 cursor(reviewId) 다음부터 조회
+    Flux<Review> findAllBy(Pageable pageable);
+
+    Flux<Review> findByReviewIdGreaterThan(String reviewId, Pageable pageable);
+
+    Flux<Review> findReviewsByMovieInfoId(Long movieInfoId, Pageable pageable);
+
+    Flux<Review> findReviewsByMovieInfoIdAndReviewIdGreaterThan(Long movieInfoId, String reviewId, Pageable pageable);
 }
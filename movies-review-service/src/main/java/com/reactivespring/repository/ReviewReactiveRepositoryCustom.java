@@ -0,0 +1,17 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ReviewReactiveRepositoryCustom {
+
+    Flux<Review> findProjected(Query query, Collection<String> fields);
+
+    Mono<Review> updateAndGetPrevious(String reviewId, String comment, Double rating);
+
+    Mono<Review> removeAndGet(String reviewId);
+}
@@ -0,0 +1,51 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * findProjected : 요청한 필드만 Mongo 에서 읽어온다 (reviewId(_id) 는 항상 포함).
+ * 나머지 필드는 null 로 매핑되고 응답에서는 제외된다.
+ * updateAndGetPrevious : 수정 전 문서를 한 번의 findAndModify 로 받아오므로,
+ * 같은 review 를 동시에 수정해도 각 요청이 자기가 바꾼 이전 rating 을 정확히 알 수 있다 (ReviewSummary 갱신용).
+ * removeAndGet : 실제로 삭제한 요청만 삭제된 문서를 받는다 (동시에 삭제하면 한 요청만 ReviewSummary 를 갱신한다).
+ */
+class ReviewReactiveRepositoryCustomImpl implements ReviewReactiveRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    ReviewReactiveRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Flux<Review> findProjected(Query query, Collection<String> fields) {
+        query.fields().include(fields.toArray(String[]::new));
+        return mongoTemplate.find(query, Review.class);
+    }
+
+    // 없는 reviewId 면 empty
+    @Override
+    public Mono<Review> updateAndGetPrevious(String reviewId, String comment, Double rating) {
+        var update = new Update()
+                .set("comment", comment)
+                .set("rating", rating);
+        return mongoTemplate.findAndModify(new Query(where("_id").is(reviewId)), update,
+                FindAndModifyOptions.options().returnNew(false), Review.class);
+    }
+
+    // 없거나 이미 다른 요청이 삭제했으면 empty
+    @Override
+    public Mono<Review> removeAndGet(String reviewId) {
+        return mongoTemplate.findAndRemove(new Query(where("_id").is(reviewId)), Review.class);
+    }
+}
@@ -0,0 +1,19 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSummary;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReviewSummaryRepositoryCustom {
+
+    Mono<ReviewSummary> addReview(Review review);
+
+    Mono<ReviewSummary> removeReview(Review review);
+
+    Mono<ReviewSummary> changeRating(Long movieInfoId, Double oldRating, Double newRating);
+
+    Mono<ReviewSummary> rebuild(Long movieInfoId);
+
+    Flux<ReviewSummary> rebuildAll();
+}
@@ -0,0 +1,209 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSummary;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * ReviewSummary 를 $inc/$min/$max 로 원자적으로 갱신한다.
+ * 삭제/수정으로 빠진 rating 이 min/max 였던 경우에만 reviews 컬렉션에서 min/max 를 다시 찾는다.
+ * (review 저장/삭제가 끝난 뒤에 호출되어야 한다)
+ * 빼는 갱신(삭제, rating 변경)은 count / histogram 이 0 아래로 내려가면 적용하지 않고,
+ * 대신 reviews 컬렉션을 aggregate 해서 그 movie 의 summary 를 다시 만든다 (집계가 틀어져 있던 경우).
+ */
+class ReviewSummaryRepositoryCustomImpl implements ReviewSummaryRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    ReviewSummaryRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<ReviewSummary> addReview(Review review) {
+        return apply(review.getMovieInfoId(), 1, null, review.getRating());
+    }
+
+    @Override
+    public Mono<ReviewSummary> removeReview(Review review) {
+        return apply(review.getMovieInfoId(), -1, review.getRating(), null);
+    }
+
+    @Override
+    public Mono<ReviewSummary> changeRating(Long movieInfoId, Double oldRating, Double newRating) {
+        if (Objects.equals(oldRating, newRating)) {
+            return mongoTemplate.findById(movieInfoId, ReviewSummary.class);
+        }
+        return apply(movieInfoId, 0, oldRating, newRating);
+    }
+
+    private Mono<ReviewSummary> apply(Long movieInfoId, int reviewCountDelta, Double removedRating, Double addedRating) {
+        long ratingCountDelta = 0;
+        double ratingSumDelta = 0;
+        Map<String, Long> histogramDelta = new HashMap<>();
+
+        if (removedRating != null) {
+            ratingCountDelta--;
+            ratingSumDelta -= removedRating;
+            histogramDelta.merge(bucket(removedRating), -1L, Long::sum);
+        }
+        if (addedRating != null) {
+            ratingCountDelta++;
+            ratingSumDelta += addedRating;
+            histogramDelta.merge(bucket(addedRating), 1L, Long::sum);
+        }
+
+        // 빼는 값이 있으면 0 아래로 내려가지 않을 때만 갱신한다 (upsert 는 더하기만 있을 때)
+        var query = byMovieInfoId(movieInfoId);
+        var subtracting = reviewCountDelta < 0 || removedRating != null;
+        if (reviewCountDelta < 0) {
+            query.addCriteria(where("reviewCount").gte(-reviewCountDelta));
+        }
+        if (removedRating != null) {
+            query.addCriteria(where("ratingCount").gte(1))
+                    .addCriteria(where("ratingHistogram." + bucket(removedRating)).gte(1));
+        }
+
+        var update = new Update()
+                .inc("reviewCount", reviewCountDelta)
+                .inc("ratingCount", ratingCountDelta)
+                .inc("ratingSum", ratingSumDelta);
+        histogramDelta.forEach((bucket, delta) -> update.inc("ratingHistogram." + bucket, delta));
+        if (addedRating != null) {
+            update.min("minRating", addedRating)
+                    .max("maxRating", addedRating);
+        }
+
+        return mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().upsert(!subtracting).returnNew(true), ReviewSummary.class)
+                .flatMap(summary -> wasExtreme(summary, removedRating)
+                        ? recomputeExtremes(movieInfoId)
+                        : Mono.just(summary))
+                .switchIfEmpty(Mono.defer(() -> rebuild(movieInfoId)));
+    }
+
+    // reviews 컬렉션에서 다시 집계해서 덮어쓴다 (review 가 없으면 summary 를 지운다)
+    @Override
+    public Mono<ReviewSummary> rebuild(Long movieInfoId) {
+        return aggregate(new Document("movieInfoId", movieInfoId))
+                .next()
+                .flatMap(mongoTemplate::save)
+                .switchIfEmpty(Mono.defer(() -> mongoTemplate.remove(byMovieInfoId(movieInfoId), ReviewSummary.class)
+                        .then(Mono.empty())));
+    }
+
+    @Override
+    public Flux<ReviewSummary> rebuildAll() {
+        return aggregate(new Document())
+                .concatMap(mongoTemplate::save);
+    }
+
+    // movieInfoId, rating 의 정수 부분 별로 먼저 묶은 뒤 movieInfoId 별로 다시 묶는다 (rating 이 없는 review 는 bucket 이 null)
+    private Flux<ReviewSummary> aggregate(Document match) {
+        var pipeline = List.of(
+                new Document("$match", match),
+                new Document("$group", new Document("_id", new Document("movieInfoId", "$movieInfoId")
+                        .append("bucket", new Document("$floor", "$rating")))
+                        .append("count", new Document("$sum", 1))
+                        .append("ratingSum", new Document("$sum", "$rating"))
+                        .append("minRating", new Document("$min", "$rating"))
+                        .append("maxRating", new Document("$max", "$rating"))),
+                new Document("$group", new Document("_id", "$_id.movieInfoId")
+                        .append("buckets", new Document("$push", new Document("bucket", "$_id.bucket")
+                                .append("count", "$count")))
+                        .append("ratingSum", new Document("$sum", "$ratingSum"))
+                        .append("minRating", new Document("$min", "$minRating"))
+                        .append("maxRating", new Document("$max", "$maxRating"))));
+
+        return Flux.from(mongoTemplate.getCollection(mongoTemplate.getCollectionName(Review.class))
+                        .flatMapMany(collection -> collection.aggregate(pipeline)))
+                .map(ReviewSummaryRepositoryCustomImpl::toSummary);
+    }
+
+    private static ReviewSummary toSummary(Document document) {
+        long reviewCount = 0;
+        long ratingCount = 0;
+        Map<String, Long> histogram = new HashMap<>();
+        for (var bucket : document.getList("buckets", Document.class, new ArrayList<>())) {
+            var count = ((Number) bucket.get("count")).longValue();
+            reviewCount += count;
+            var rating = (Number) bucket.get("bucket");
+            if (rating != null) {
+                ratingCount += count;
+                histogram.merge(String.valueOf(rating.longValue()), count, Long::sum);
+            }
+        }
+        return new ReviewSummary(((Number) document.get("_id")).longValue(), reviewCount, ratingCount,
+                ((Number) document.get("ratingSum")).doubleValue(),
+                toDouble(document.get("minRating")), toDouble(document.get("maxRating")), histogram);
+    }
+
+    private static Double toDouble(Object value) {
+        return value == null ? null : ((Number) value).doubleValue();
+    }
+
+    private static boolean wasExtreme(ReviewSummary summary, Double removedRating) {
+        if (removedRating == null) {
+            return false;
+        }
+        return summary.getMinRating() == null || summary.getMaxRating() == null
+                || removedRating <= summary.getMinRating() || removedRating >= summary.getMaxRating();
+    }
+
+    private Mono<ReviewSummary> recomputeExtremes(Long movieInfoId) {
+        var minRating = findRating(movieInfoId, Sort.Direction.ASC);
+        var maxRating = findRating(movieInfoId, Sort.Direction.DESC);
+
+        return Mono.zip(minRating, maxRating)
+                .flatMap(extremes -> {
+                    var update = new Update();
+                    setOrUnset(update, "minRating", extremes.getT1());
+                    setOrUnset(update, "maxRating", extremes.getT2());
+                    return mongoTemplate.findAndModify(byMovieInfoId(movieInfoId), update,
+                            FindAndModifyOptions.options().returnNew(true), ReviewSummary.class);
+                });
+    }
+
+    private Mono<Optional<Double>> findRating(Long movieInfoId, Sort.Direction direction) {
+        var query = new Query(where("movieInfoId").is(movieInfoId).and("rating").ne(null))
+                .with(Sort.by(direction, "rating"))
+                .limit(1);
+        query.fields().include("rating");
+
+        return mongoTemplate.findOne(query, Review.class)
+                .map(review -> Optional.of(review.getRating()))
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private static void setOrUnset(Update update, String key, Optional<Double> value) {
+        if (value.isPresent()) {
+            update.set(key, value.get());
+        } else {
+            update.unset(key);
+        }
+    }
+
+    private static Query byMovieInfoId(Long movieInfoId) {
+        return new Query(where("_id").is(movieInfoId));
+    }
+
+    private static String bucket(Double rating) {
+        return String.valueOf((long) Math.floor(rating));
+    }
+}
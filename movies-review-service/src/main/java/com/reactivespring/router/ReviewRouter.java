@@ -3,6 +3,8 @@ package com.reactivespring.router;
 import com.reactivespring.handler.ReviewHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
@@ -18,7 +20,11 @@ public class ReviewRouter {
     public RouterFunction<ServerResponse> reviewsRoute(ReviewHandler reviewHandler) {
         return route()
                 .nest(path("/v1/reviews"), builder -> {
-                    builder.GET("", reviewHandler::getReviews)
+                    builder.GET("", acceptNdjson(), reviewHandler::streamReviews)
+                            .GET("", reviewHandler::getReviews)
+                            .GET("bulk", reviewHandler::getReviewsByMovieInfoIds)
+                            .GET("summary", reviewHandler::getReviewSummary)
+                            .GET("stream", reviewHandler::streamReviewEvents)
                             .POST("", reviewHandler::addReview)
                             .PUT("{id}", reviewHandler::updateReview)
                             .DELETE("{id}", reviewHandler::deleteReview);
@@ -27,4 +33,10 @@ public class ReviewRouter {
                 .build();
     }
 
+    // RequestPredicates.accept 는 */* 도 매칭되므로 NDJSON 을 명시한 요청만 stream 으로 보낸다
+    private static RequestPredicate acceptNdjson() {
+        return request -> request.headers().accept().stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+    }
+
 }
@@ -0,0 +1,177 @@
+package com.reactivespring.service;
+
+import com.mongodb.MongoException;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * /v1/reviews/stream 으로 나가는 review 이벤트를 ReviewStreamHub 로 publish 한다 (reviews.stream.source).
+ * LOCAL 이면 이 replica 에서 저장된 이벤트만 바로 hub 로 넘긴다 (replica 가 하나일 때만 쓴다).
+ * CHANGE_STREAM 이면 이벤트를 review_events(capped) 컬렉션에 insert 하고, replica 마다 그 컬렉션의 Mongo change stream 을 받아 hub 로 publish 하므로
+ * 어느 replica 에서 저장/수정/삭제되었든 모든 구독자가 받는다 (삭제된 review 의 movieInfoId 도 이벤트 문서에 남아 있다).
+ * 끊기면 마지막으로 받은 resume token 부터 다시 연결하고, 그 위치가 oplog 에서 지워졌으면 지금부터 다시 받는다 (hub 의 구독은 410 으로 끝난다).
+ * position 은 replica 마다 따로 매기므로, 다른 replica 로 다시 연결한 client 는 410 을 받고 reviews 를 다시 읽은 뒤 구독한다.
+ * Mongo 가 replica set 으로 떠 있어야 한다 (single node 도 가능).
+ */
+@Component
+@Slf4j
+public class ReviewEventChangeStream {
+
+    public enum Source {
+        // 이 replica 에서 저장된 review 이벤트만 (replica 가 하나일 때)
+        LOCAL,
+        // review_events 컬렉션의 Mongo change stream (replica set 필요). 모든 replica 의 이벤트를 받는다
+        CHANGE_STREAM
+    }
+
+    static final String COLLECTION = "review_events";
+    // ChangeStreamHistoryLost : resume token 이 oplog 범위를 벗어남
+    private static final int HISTORY_LOST = 286;
+    // resume token 을 잃고 다시 연결할 때 이만큼 앞선 시각부터 받는다 (겹치는 구간의 이벤트는 한 번 더 publish 된다)
+    private static final Duration RESTART_OVERLAP = Duration.ofSeconds(5);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ReviewStreamHub reviewStreamHub;
+    private final Source source;
+    private final DataSize collectionSize;
+    private final Duration maxBackoff;
+
+    private volatile BsonValue lastResumeToken;
+    // resume token 없이 다시 연결할 때의 시작 시각 (token 을 oplog 에서 잃은 경우)
+    private volatile Instant restartAt;
+    private Disposable subscription;
+
+    public ReviewEventChangeStream(ReactiveMongoTemplate reactiveMongoTemplate, ReviewStreamHub reviewStreamHub,
+                                   @Value("${reviews.stream.source:LOCAL}") Source source,
+                                   @Value("${reviews.stream.events-collection-size:64MB}") DataSize collectionSize,
+                                   @Value("${reviews.stream.change-stream-max-backoff:30s}") Duration maxBackoff) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.reviewStreamHub = reviewStreamHub;
+        this.source = source;
+        this.collectionSize = collectionSize;
+        this.maxBackoff = maxBackoff;
+    }
+
+    public Mono<Void> publishCreated(Review review) {
+        return publish(ReviewEvent.created(review));
+    }
+
+    public Mono<Void> publishUpdated(Review review) {
+        return publish(ReviewEvent.updated(review));
+    }
+
+    public Mono<Void> publishDeleted(Review review) {
+        return publish(ReviewEvent.deleted(review));
+    }
+
+    // CHANGE_STREAM 이면 insert 가 끝나야 완료된다 (구독자에게는 change stream 으로 전달된다)
+    public Mono<Void> publish(ReviewEvent event) {
+        if (source == Source.LOCAL) {
+            return Mono.fromRunnable(() -> reviewStreamHub.publish(event));
+        }
+        return reactiveMongoTemplate.insert(event, COLLECTION).then();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (source != Source.CHANGE_STREAM) {
+            return;
+        }
+        subscription = createCollection()
+                .thenMany(Flux.defer(() -> watch(lastResumeToken, restartAt)))
+                .doOnSubscribe(s -> log.info("subscribing review event change stream (resume token : {}, restart at : {})",
+                        lastResumeToken, restartAt))
+                .doOnError(ex -> {
+                    if (isHistoryLost(ex)) {
+                        restartFromNow();
+                    } else {
+                        log.warn("review event change stream disconnected : {}", ex.getMessage());
+                    }
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(maxBackoff)
+                        .transientErrors(true))
+                .subscribe(event -> {
+                    lastResumeToken = event.getResumeToken();
+                    restartAt = null;
+                    if (event.getBody() != null) {
+                        reviewStreamHub.publish(event.getBody());
+                    }
+                });
+    }
+
+    // 마지막 token 이후 지금까지의 이벤트는 알 수 없으므로, 이어받던 구독자와 그 이전 position 은 410 으로 끝낸다
+    private void restartFromNow() {
+        log.warn("review event change stream resume token {} is no longer in the oplog, restarting from now", lastResumeToken);
+        lastResumeToken = null;
+        restartAt = Instant.now().minus(RESTART_OVERLAP);
+        reviewStreamHub.reset();
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    // insert 만 받는다. resumeToken 이 있으면 그 다음부터, 없고 startAt 이 있으면 그 시각부터, 둘 다 없으면 지금부터
+    private Flux<ChangeStreamEvent<ReviewEvent>> watch(BsonValue resumeToken, Instant startAt) {
+        return reactiveMongoTemplate.changeStream(ReviewEvent.class)
+                .withOptions(options -> {
+                    if (resumeToken != null) {
+                        options.resumeAfter(resumeToken);
+                    } else if (startAt != null) {
+                        options.resumeAt(startAt);
+                    }
+                })
+                .watchCollection(COLLECTION)
+                .filter(where("operationType").is("insert"))
+                .listen();
+    }
+
+    // 오래된 이벤트는 Mongo 가 지우도록 capped 컬렉션으로 만든다 (다른 replica 가 먼저 만들었으면 그대로 쓴다)
+    private Mono<Void> createCollection() {
+        return reactiveMongoTemplate.collectionExists(COLLECTION)
+                .filter(exists -> !exists)
+                .flatMap(missing -> reactiveMongoTemplate.createCollection(COLLECTION, CollectionOptions.empty()
+                        .capped()
+                        .size(collectionSize.toBytes())))
+                .doOnNext(collection -> log.info("Created capped collection {} ({})", COLLECTION, collectionSize))
+                .then()
+                .onErrorResume(DataAccessException.class, ex -> {
+                    log.debug("{} already created by another replica : {}", COLLECTION, ex.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private static boolean isHistoryLost(Throwable ex) {
+        for (var cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException && ((MongoException) cause).getCode() == HISTORY_LOST) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
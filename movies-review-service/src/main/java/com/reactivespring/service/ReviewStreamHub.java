@@ -0,0 +1,313 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.exception.ReviewStreamGoneException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.util.concurrent.Queues;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * /v1/reviews/stream 구독자들에게 review 생성/수정/삭제 이벤트를 movieInfoId 별로 나눠주는 hub.
+ * publish 된 이벤트는 순서대로 sequence 를 받고 최근 reviews.stream.replay-size 건을 ring buffer 에 남겨두므로,
+ * 구독할 때 마지막으로 받은 position 을 넘기면 그 다음 이벤트부터 빠짐없이 이어서 받는다 (polling 하던 client 가 push 로 넘어올 때).
+ * 구독자마다 live 이벤트 queue 는 reviews.stream.buffer-size 로 제한되고, 가득 차면 queue 를 비우고 ring buffer 에서 다시 읽는다.
+ * 그래서 느린 구독자 때문에 메모리가 늘거나 publish(저장 경로)가 기다리지 않고,
+ * ring buffer 가 한 바퀴 돌아 읽을 위치가 덮어써진 경우에만 구독이 ReviewStreamGoneException(410) 으로 끝난다.
+ * publish / 구독 등록은 여러 스레드에서 호출해도 되고 (lock 없이 MPSC queue 에 넣고 한 스레드만 실행한다),
+ * 같은 movieInfoId 의 이벤트는 모든 구독자가 같은 순서로 받는다.
+ * 이벤트는 ReviewEventChangeStream 이 넘겨준다 (reviews.stream.source 에 따라 이 replica 의 저장만, 또는 모든 replica 의 저장).
+ */
+@Component
+@Slf4j
+public class ReviewStreamHub {
+
+    static final String METRIC_PREFIX = "reviews.stream";
+
+    // 서버가 뜰 때마다 바뀐다. 다른 epoch 의 position 은 sequence 가 이어지지 않으므로 410
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final int bufferSize;
+    private final AtomicReferenceArray<ReviewEvent> ring;
+    // 아래 필드들은 command 를 실행하는 스레드만 쓴다 (lastSequence, invalidUntil 은 구독 요청 검증 때문에 volatile)
+    private volatile long lastSequence;
+    // 이 sequence 까지의 position 은 이어줄 수 없다 (reset 참고)
+    private volatile long invalidUntil = -1;
+    private final Map<Long, Set<StreamSubscriber>> subscribersByMovieInfoId = new HashMap<>();
+    private final Set<StreamSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // publish / 구독 등록 / 해제를 직렬화한다. wip 를 0 에서 올린 스레드가 queue 를 비울 때까지 실행한다
+    private final Queue<Runnable> commands = Queues.<Runnable>unboundedMultiproducer().get();
+    private final AtomicInteger commandWip = new AtomicInteger();
+
+    private final Counter published;
+    private final Counter overflowed;
+    private final Counter gone;
+
+    public ReviewStreamHub(@Value("${reviews.stream.replay-size:10000}") int replaySize,
+                           @Value("${reviews.stream.buffer-size:256}") int bufferSize,
+                           MeterRegistry meterRegistry) {
+        this.ring = new AtomicReferenceArray<>(replaySize);
+        this.bufferSize = bufferSize;
+        Gauge.builder(METRIC_PREFIX + ".subscribers", subscribers, Set::size)
+                .register(meterRegistry);
+        this.published = Counter.builder(METRIC_PREFIX + ".published").register(meterRegistry);
+        this.overflowed = Counter.builder(METRIC_PREFIX + ".overflow")
+                .description("live queue 가 가득 차서 ring buffer 에서 다시 읽게 된 횟수")
+                .register(meterRegistry);
+        this.gone = Counter.builder(METRIC_PREFIX + ".gone")
+                .description("읽을 위치가 ring buffer 에서 밀려나 410 으로 끝난 구독 수")
+                .register(meterRegistry);
+    }
+
+    public void publishCreated(Review review) {
+        publish(ReviewEvent.created(review));
+    }
+
+    public void publishUpdated(Review review) {
+        publish(ReviewEvent.updated(review));
+    }
+
+    public void publishDeleted(Review review) {
+        publish(ReviewEvent.deleted(review));
+    }
+
+    // 구독자에게 전달되기 전에 반환될 수 있다 (다른 스레드가 실행 중이면 그 스레드가 대신 전달한다)
+    public void publish(ReviewEvent event) {
+        execute(() -> deliver(event));
+    }
+
+    // source 가 이벤트를 잃었을 때 호출한다 (change stream 의 resume token 이 oplog 에서 지워진 경우)
+    // 지금까지의 구독과 position 은 빠진 이벤트를 이어줄 수 없으므로 410 으로 끝낸다 (client 는 reviews 를 다시 읽고 구독한다)
+    public void reset() {
+        execute(() -> {
+            invalidUntil = lastSequence;
+            List.copyOf(subscribers).forEach(subscriber -> {
+                gone.increment();
+                subscriber.sink.error(new ReviewStreamGoneException("Review stream lost events after position "
+                        + epoch + "-" + lastSequence + ". Reload the reviews and subscribe again without a position"));
+            });
+        });
+    }
+
+    // after 는 마지막으로 받은 이벤트의 position. 없으면 구독한 시점 이후의 이벤트만 받는다
+    public Flux<ReviewEvent> subscribe(Set<Long> movieInfoIds, String after) {
+        if (movieInfoIds.isEmpty()) {
+            return Flux.error(new ReviewDataException("movieInfoId must be present"));
+        }
+        long afterSequence;
+        try {
+            afterSequence = after == null ? -1 : afterSequence(after);
+        } catch (RuntimeException ex) {
+            return Flux.error(ex);
+        }
+
+        return Flux.create(sink -> {
+            var subscriber = new StreamSubscriber(sink, Set.copyOf(movieInfoIds), afterSequence);
+            sink.onRequest(n -> subscriber.drain());
+            sink.onDispose(() -> execute(() -> unregister(subscriber)));
+            execute(() -> register(subscriber));
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    private long afterSequence(String position) {
+        var separator = position.lastIndexOf('-');
+        long sequence;
+        try {
+            sequence = Long.parseLong(position.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new ReviewDataException("Invalid review stream position : " + position);
+        }
+        if (separator <= 0 || sequence < 0) {
+            throw new ReviewDataException("Invalid review stream position : " + position);
+        }
+        var last = lastSequence;
+        // 다른 epoch 이거나, 이미 ring buffer 에서 밀려난 위치면 이어서 줄 수 없다
+        if (!epoch.equals(position.substring(0, separator)) || sequence > last || sequence < last - ring.length()
+                || sequence <= invalidUntil) {
+            gone.increment();
+            throw new ReviewStreamGoneException("Review stream position " + position
+                    + " is no longer available. Reload the reviews and subscribe again without a position");
+        }
+        return sequence;
+    }
+
+    private void execute(Runnable command) {
+        commands.offer(command);
+        if (commandWip.getAndIncrement() != 0) {
+            return;
+        }
+        var missed = 1;
+        do {
+            Runnable next;
+            while ((next = commands.poll()) != null) {
+                next.run();
+            }
+            missed = commandWip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void deliver(ReviewEvent event) {
+        var sequence = lastSequence + 1;
+        event.setSequence(sequence);
+        event.setPosition(epoch + "-" + sequence);
+        ring.set(slot(sequence), event);
+        lastSequence = sequence;
+        published.increment();
+
+        var interested = subscribersByMovieInfoId.get(event.getMovieInfoId());
+        if (interested != null) {
+            interested.forEach(subscriber -> subscriber.offer(event));
+        }
+    }
+
+    private void register(StreamSubscriber subscriber) {
+        if (subscriber.sink.isCancelled()) {
+            return;
+        }
+        // 위치를 검증한 뒤 등록되기 전에 reset 된 경우
+        if (subscriber.cursor != 0 && subscriber.cursor <= invalidUntil) {
+            gone.increment();
+            subscriber.sink.error(new ReviewStreamGoneException("Review stream position " + epoch + "-" + (subscriber.cursor - 1)
+                    + " is no longer available. Reload the reviews and subscribe again without a position"));
+            return;
+        }
+        subscriber.start(lastSequence);
+        subscriber.movieInfoIds.forEach(id -> subscribersByMovieInfoId
+                .computeIfAbsent(id, key -> new HashSet<>())
+                .add(subscriber));
+        subscribers.add(subscriber);
+        subscriber.drain();
+    }
+
+    private void unregister(StreamSubscriber subscriber) {
+        subscriber.movieInfoIds.forEach(id -> {
+            var registered = subscribersByMovieInfoId.get(id);
+            if (registered != null && registered.remove(subscriber) && registered.isEmpty()) {
+                subscribersByMovieInfoId.remove(id);
+            }
+        });
+        subscribers.remove(subscriber);
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % ring.length());
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private final class StreamSubscriber {
+
+        private final FluxSink<ReviewEvent> sink;
+        private final Set<Long> movieInfoIds;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final ArrayDeque<ReviewEvent> live = new ArrayDeque<>();
+        // sequence 가 replayUntil 이하인 이벤트는 ring buffer 에서, 그 뒤는 live queue 에서 읽는다 (live 와 함께 lock 으로 보호)
+        private long replayUntil;
+        // 다음에 읽을 sequence (drain 하는 스레드만 쓴다)
+        private long cursor;
+        private volatile boolean started;
+
+        StreamSubscriber(FluxSink<ReviewEvent> sink, Set<Long> movieInfoIds, long afterSequence) {
+            this.sink = sink;
+            this.movieInfoIds = movieInfoIds;
+            this.cursor = afterSequence + 1;
+        }
+
+        // 등록 시점까지 publish 된 이벤트는 ring buffer 에서 읽는다 (position 없이 구독하면 읽을 것이 없다)
+        void start(long registeredSequence) {
+            synchronized (live) {
+                replayUntil = registeredSequence;
+                if (cursor == 0) {
+                    cursor = registeredSequence + 1;
+                }
+            }
+            started = true;
+        }
+
+        void offer(ReviewEvent event) {
+            synchronized (live) {
+                if (live.size() >= bufferSize) {
+                    // 버린 이벤트는 ring buffer 에 있으므로 다시 읽으면 된다
+                    live.clear();
+                    replayUntil = event.getSequence();
+                    overflowed.increment();
+                } else {
+                    live.offer(event);
+                }
+            }
+            drain();
+        }
+
+        private ReviewEvent next() {
+            while (true) {
+                long until;
+                synchronized (live) {
+                    until = replayUntil;
+                    if (cursor > until) {
+                        var event = live.poll();
+                        if (event != null) {
+                            cursor = event.getSequence() + 1;
+                        }
+                        return event;
+                    }
+                }
+                // 읽는 동안 overflow 로 replayUntil 이 늘어날 수 있으므로 끝까지 읽은 뒤 다시 확인한다
+                while (cursor <= until) {
+                    var event = ring.get(slot(cursor));
+                    if (event == null || event.getSequence() != cursor) {
+                        throw new ReviewStreamGoneException("Review stream subscriber fell more than "
+                                + ring.length() + " events behind. Reload the reviews and subscribe again without a position");
+                    }
+                    cursor++;
+                    if (movieInfoIds.contains(event.getMovieInfoId())) {
+                        return event;
+                    }
+                }
+            }
+        }
+
+        void drain() {
+            if (!started || wip.getAndIncrement() != 0) {
+                return;
+            }
+            var missed = 1;
+            do {
+                try {
+                    while (sink.requestedFromDownstream() > 0 && !sink.isCancelled()) {
+                        var next = next();
+                        if (next == null) {
+                            break;
+                        }
+                        sink.next(next);
+                    }
+                } catch (ReviewStreamGoneException ex) {
+                    log.debug("review stream subscriber is too slow : {}", ex.getMessage());
+                    gone.increment();
+                    sink.error(ex);
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
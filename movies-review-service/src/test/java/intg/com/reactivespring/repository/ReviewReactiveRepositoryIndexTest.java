@@ -0,0 +1,97 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.config.MongoIndexInitializer;
+import com.reactivespring.domain.Review;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// repository finder 들이 사용하는 쿼리의 실행 계획(explain)을 확인해서 COLLSCAN 으로 회귀하면 실패시킨다
+@DataMongoTest
+@Import(MongoIndexInitializer.class)
+@TestPropertySource(properties = "spring.mongodb.embedded.version=3.0.0")
+@ActiveProfiles("test")
+class ReviewReactiveRepositoryIndexTest {
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        var reviewsList = List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 1L, "Awesome Movie1", 9.0),
+                new Review(null, 2L, "Excellent Movie", 8.0));
+
+        reviewReactiveRepository.saveAll(reviewsList)
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+    }
+
+    @Test
+    void findReviewsByMovieInfoId() {
+        assertIndexScan(new Query(where("movieInfoId").is(1L)));
+    }
+
+    @Test
+    void findReviewsByMovieInfoIdIn() {
+        assertIndexScan(new Query(where("movieInfoId").in(1L, 2L)));
+    }
+
+    @Test
+    void findReviewsByMovieInfoIdAndReviewIdGreaterThan() {
+        assertIndexScan(new Query(where("movieInfoId").is(1L).and("reviewId").gt("0"))
+                .with(Sort.by("reviewId"))
+                .limit(10));
+    }
+
+    @Test
+    void findRatingExtremes() {
+        assertIndexScan(new Query(where("movieInfoId").is(1L).and("rating").ne(null))
+                .with(Sort.by(Sort.Direction.DESC, "rating"))
+                .limit(1));
+    }
+
+    private void assertIndexScan(Query query) {
+        var entity = reactiveMongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(Review.class);
+        var queryMapper = new QueryMapper(reactiveMongoTemplate.getConverter());
+        var filter = queryMapper.getMappedObject(query.getQueryObject(), entity);
+        var sort = queryMapper.getMappedSort(query.getSortObject(), entity);
+
+        var explain = reactiveMongoTemplate.getCollection(entity.getCollection())
+                .flatMap(collection -> Mono.from(collection.find(filter)
+                        .sort(sort)
+                        .limit(query.getLimit())
+                        .explain(Document.class)))
+                .block();
+
+        assert explain != null;
+        var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+        assertTrue(winningPlan.contains("IXSCAN"), winningPlan);
+    }
+}
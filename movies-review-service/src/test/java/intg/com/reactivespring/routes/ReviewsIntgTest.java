@@ -2,6 +2,7 @@ package com.reactivespring.routes;
 
 import com.reactivespring.domain.Review;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,10 +10,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -23,6 +26,7 @@ import static org.mockito.Mockito.when;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
+@TestPropertySource(properties = "spring.mongodb.embedded.version=3.0.0")
 @AutoConfigureWebTestClient
 public class ReviewsIntgTest {
 
@@ -32,6 +36,9 @@ public class ReviewsIntgTest {
     @Autowired
     ReviewReactiveRepository reviewReactiveRepository;
 
+    @Autowired
+    ReviewSummaryRepository reviewSummaryRepository;
+
     static String REVIEWS_URL = "/v1/reviews";
 
     @BeforeEach
@@ -48,6 +55,7 @@ public class ReviewsIntgTest {
     @AfterEach
     void tearDown() {
         reviewReactiveRepository.deleteAll().block();
+        reviewSummaryRepository.deleteAll().block();
     }
 
     @Test
@@ -117,6 +125,125 @@ public class ReviewsIntgTest {
                 .hasSize(2);
     }
 
+    @Test
+    void getReviewsByMovieInfoIds() {
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/bulk?movieInfoIds={ids}", "1,2,3")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.1.length()").isEqualTo(2)
+                .jsonPath("$.2.length()").isEqualTo(1)
+                .jsonPath("$.3.length()").isEqualTo(0);
+    }
+
+    @Test
+    void getReviewsByMovieInfoIds_fields() {
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/bulk?movieInfoIds={ids}&fields=rating", "1,2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.1.length()").isEqualTo(2)
+                .jsonPath("$.1[0].rating").exists()
+                .jsonPath("$.1[0].movieInfoId").isEqualTo(1)
+                .jsonPath("$.1[0].comment").doesNotExist();
+    }
+
+    @Test
+    void getReviewSummary() {
+        // given
+        var reviews = List.of(
+                new Review(null, 3L, "Awesome Movie", 9.0),
+                new Review(null, 3L, "Good Movie", 7.5),
+                new Review(null, 3L, "Bad Movie", 2.0));
+        var savedReviews = new ArrayList<Review>();
+        reviews.forEach(review -> webTestClient.post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .consumeWith(result -> savedReviews.add(result.getResponseBody())));
+
+        // when
+        // 최소값(2.0) review 를 삭제하고, 최대값(9.0) review 를 8.0 으로 수정
+        var lowest = savedReviews.get(2);
+        webTestClient.delete()
+                .uri(REVIEWS_URL + "/{id}", lowest.getReviewId())
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+        var highest = savedReviews.get(0);
+        webTestClient.put()
+                .uri(REVIEWS_URL + "/{id}", highest.getReviewId())
+                .bodyValue(new Review(null, 3L, "Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // then
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/summary?movieInfoId={id}", 3)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.reviewCount").isEqualTo(2)
+                .jsonPath("$.ratingCount").isEqualTo(2)
+                .jsonPath("$.averageRating").isEqualTo(7.75)
+                .jsonPath("$.minRating").isEqualTo(7.5)
+                .jsonPath("$.maxRating").isEqualTo(8.0)
+                .jsonPath("$.ratingHistogram.2").isEqualTo(0)
+                .jsonPath("$.ratingHistogram.7").isEqualTo(1)
+                .jsonPath("$.ratingHistogram.8").isEqualTo(1)
+                .jsonPath("$.ratingHistogram.9").isEqualTo(0);
+    }
+
+    @Test
+    void getReviewSummary_rebuiltInsteadOfGoingNegative() {
+        // given : setUp 의 review 들은 summary 없이 저장되어 있다 (summary 이전에 저장된 review)
+        var target = reviewReactiveRepository.findReviewsByMovieInfoId(1L).blockFirst();
+        assert target != null;
+
+        // when
+        webTestClient.delete()
+                .uri(REVIEWS_URL + "/{id}", target.getReviewId())
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        // then : 0 아래로 빼지 않고 남은 review 로 다시 집계한다
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/summary?movieInfoId={id}", 1)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.reviewCount").isEqualTo(1)
+                .jsonPath("$.ratingCount").isEqualTo(1)
+                .jsonPath("$.averageRating").isEqualTo(9.0)
+                .jsonPath("$.ratingHistogram.9").isEqualTo(1);
+    }
+
+    @Test
+    void rebuildAllReviewSummaries() {
+        // when
+        reviewSummaryRepository.rebuildAll().blockLast();
+
+        // then
+        var summary = reviewSummaryRepository.findById(1L).block();
+        assertNotNull(summary);
+        assertEquals(2, summary.getReviewCount());
+        assertEquals(18.0, summary.getRatingSum());
+        assertEquals(9.0, summary.getMinRating());
+        assertEquals(2L, summary.getRatingHistogram().get("9"));
+        assertEquals(1, Objects.requireNonNull(reviewSummaryRepository.findById(2L).block()).getReviewCount());
+    }
+
     @Test
     void updateReview() {
         //given
@@ -0,0 +1,120 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+// change stream 은 replica set 이 필요해서 embedded mongo 대신 로컬 replica set 으로 실행한다 (README.md 참고)
+// MONGO_REPLICA_SET_URI=mongodb://localhost:27017/review-test?replicaSet=rs0 ./gradlew test
+@EnabledIfEnvironmentVariable(named = "MONGO_REPLICA_SET_URI", matches = ".+")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.data.mongodb.uri=${MONGO_REPLICA_SET_URI}",
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration",
+        "reviews.stream.source=CHANGE_STREAM"
+})
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+class ReviewEventChangeStreamIntgTest {
+
+    static String REVIEWS_URL = "/v1/reviews";
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReviewSummaryRepository reviewSummaryRepository;
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+        reviewSummaryRepository.deleteAll().block();
+    }
+
+    private Flux<ReviewEvent> stream(long movieInfoId) {
+        return webTestClient.mutate()
+                .responseTimeout(Duration.ofSeconds(30))
+                .build()
+                .get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId={id}", movieInfoId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(ReviewEvent.class)
+                .getResponseBody();
+    }
+
+    @Test
+    void stream_otherReplicaEvents() {
+        // given : 다른 replica 가 review_events 에 남긴 이벤트
+        Mono.delay(Duration.ofMillis(500))
+                .then(reactiveMongoTemplate.insert(ReviewEvent.created(new Review("other", 1L, "Awesome Movie", 9.0)),
+                        ReviewEventChangeStream.COLLECTION))
+                .subscribe();
+
+        // then
+        StepVerifier.create(stream(1L))
+                .assertNext(event -> {
+                    Assertions.assertEquals(ReviewEvent.Type.CREATED, event.getType());
+                    Assertions.assertEquals("other", event.getReviewId());
+                    Assertions.assertNotNull(event.getPosition());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void stream_savedAndDeleted() {
+        // given : 이 replica 에서 저장 후 삭제 (삭제 이벤트에도 movieInfoId 가 남는다)
+        Mono.delay(Duration.ofMillis(500), Schedulers.boundedElastic())
+                .doOnNext(tick -> {
+                    var saved = webTestClient.post()
+                            .uri(REVIEWS_URL)
+                            .bodyValue(new Review(null, 2L, "Awesome Movie", 9.0))
+                            .exchange()
+                            .expectStatus().isCreated()
+                            .expectBody(Review.class)
+                            .returnResult()
+                            .getResponseBody();
+                    webTestClient.delete()
+                            .uri(REVIEWS_URL + "/{id}", saved.getReviewId())
+                            .exchange()
+                            .expectStatus().isNoContent();
+                })
+                .subscribe();
+
+        // then
+        StepVerifier.create(stream(2L))
+                .assertNext(event -> Assertions.assertEquals(ReviewEvent.Type.CREATED, event.getType()))
+                .assertNext(event -> {
+                    Assertions.assertEquals(ReviewEvent.Type.DELETED, event.getType());
+                    Assertions.assertEquals(2L, event.getMovieInfoId());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(30));
+    }
+}
@@ -0,0 +1,84 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RepositoryMetricsInterceptorTest {
+
+    interface SampleRepository {
+        Mono<String> findById(String id);
+
+        Flux<String> findAll();
+
+        Mono<String> failing();
+    }
+
+    static class SampleRepositoryImpl implements SampleRepository {
+        @Override
+        public Mono<String> findById(String id) {
+            return Mono.just(id);
+        }
+
+        @Override
+        public Flux<String> findAll() {
+            return Flux.range(1, 10).map(String::valueOf);
+        }
+
+        @Override
+        public Mono<String> failing() {
+            return Mono.error(new IllegalStateException("boom"));
+        }
+    }
+
+    SimpleMeterRegistry meterRegistry;
+    SampleRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        var proxyFactory = new ProxyFactory(new SampleRepositoryImpl());
+        proxyFactory.addInterface(SampleRepository.class);
+        proxyFactory.addAdvice(new RepositoryMetricsInterceptor(meterRegistry, SampleRepository.class));
+        repository = (SampleRepository) proxyFactory.getProxy();
+    }
+
+    @Test
+    void timesPerSubscription() {
+        var mono = repository.findById("1");
+
+        // 구독 전에는 기록하지 않는다
+        assertNull(meterRegistry.find(RepositoryMetricsInterceptor.METRIC_NAME).timer());
+
+        StepVerifier.create(mono).expectNext("1").verifyComplete();
+        StepVerifier.create(mono).expectNext("1").verifyComplete();
+
+        var timer = meterRegistry.get(RepositoryMetricsInterceptor.METRIC_NAME)
+                .tag("repository", "SampleRepository")
+                .tag("method", "findById")
+                .tag("outcome", "success")
+                .timer();
+        assertEquals(2, timer.count());
+    }
+
+    @Test
+    void outcomeErrorAndCancelled() {
+        StepVerifier.create(repository.failing()).verifyError(IllegalStateException.class);
+        StepVerifier.create(repository.findAll(), 2)
+                .expectNextCount(2)
+                .thenCancel()
+                .verify();
+
+        assertEquals(1, meterRegistry.get(RepositoryMetricsInterceptor.METRIC_NAME)
+                .tag("method", "failing").tag("outcome", "error").timer().count());
+        assertEquals(1, meterRegistry.get(RepositoryMetricsInterceptor.METRIC_NAME)
+                .tag("method", "findAll").tag("outcome", "cancelled").timer().count());
+    }
+}
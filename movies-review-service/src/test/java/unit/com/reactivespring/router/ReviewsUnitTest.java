@@ -1,9 +1,16 @@
 package com.reactivespring.router;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.ReviewStreamGoneException;
 import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.filter.DeadlineWebFilter;
 import com.reactivespring.handler.ReviewHandler;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewSummaryRepository;
+import com.reactivespring.service.ReviewEventChangeStream;
+import com.reactivespring.service.ReviewStreamHub;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,26 +18,42 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 @WebFluxTest
-@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class})
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class, DeadlineWebFilter.class})
 @AutoConfigureWebTestClient
 public class ReviewsUnitTest {
 
     @MockBean
     private ReviewReactiveRepository reviewReactiveRepository;
 
+    @MockBean
+    private ReviewSummaryRepository reviewSummaryRepository;
+
+    @MockBean
+    private ReviewStreamHub reviewStreamHub;
+
+    @MockBean
+    private ReviewEventChangeStream reviewEventChangeStream;
+
     @Autowired
     private WebTestClient webTestClient;
 
@@ -38,6 +61,15 @@ public class ReviewsUnitTest {
 
     @BeforeEach
     void setUp() {
+        when(reviewSummaryRepository.addReview(isA(Review.class)))
+                .thenReturn(Mono.just(new ReviewSummary()));
+        when(reviewSummaryRepository.removeReview(isA(Review.class)))
+                .thenReturn(Mono.just(new ReviewSummary()));
+        when(reviewSummaryRepository.changeRating(any(), any(), any()))
+                .thenReturn(Mono.just(new ReviewSummary()));
+        when(reviewEventChangeStream.publishCreated(isA(Review.class))).thenReturn(Mono.empty());
+        when(reviewEventChangeStream.publishUpdated(isA(Review.class))).thenReturn(Mono.empty());
+        when(reviewEventChangeStream.publishDeleted(isA(Review.class))).thenReturn(Mono.empty());
     }
 
     @AfterEach
@@ -71,6 +103,7 @@ public class ReviewsUnitTest {
                 });
 
         // then
+        verify(reviewEventChangeStream).publishCreated(new Review("abc", 1L, "Awesome Movie", 9.0));
     }
 
     @Test
@@ -103,15 +136,118 @@ public class ReviewsUnitTest {
                 new Review(null, 1L, "Awesome Movie1", 9.0),
                 new Review(null, 2L, "Excellent Movie", 8.0));
 
+        // when
+        when(reviewReactiveRepository.findAllBy(isA(Pageable.class)))
+                .thenReturn(Flux.fromIterable(reviewList));
+
+        webTestClient.get()
+                .uri(REVIEWS_URL)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .doesNotExist("X-Next-Cursor")
+                .expectBodyList(Review.class)
+                .hasSize(3);
+        // then
+    }
+
+    @Test
+    void getReviews_paged() {
+        // given
+        var reviewList = List.of(
+                new Review("a", 1L, "Awesome Movie", 9.0),
+                new Review("b", 1L, "Awesome Movie1", 9.0),
+                new Review("c", 2L, "Excellent Movie", 8.0));
+
+        // when
+        when(reviewReactiveRepository.findByReviewIdGreaterThan(eq("0"), isA(Pageable.class)))
+                .thenReturn(Flux.fromIterable(reviewList));
+
+        var uri = UriComponentsBuilder.fromUriString(REVIEWS_URL)
+                .queryParam("after", "0")
+                .queryParam("size", 2)
+                .buildAndExpand().toUri();
+
+        webTestClient.get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals("X-Next-Cursor", "b")
+                .expectBodyList(Review.class)
+                .hasSize(2);
+
+        // then
+        verify(reviewReactiveRepository).findByReviewIdGreaterThan(eq("0"),
+                argThat(pageable -> pageable.getPageSize() == 3));
+    }
+
+    @Test
+    void getReviews_paged_validation() {
+        webTestClient.get()
+                .uri(REVIEWS_URL + "?size=0")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviews_fields() {
+        // given
+        var reviewList = List.of(
+                new Review("a", null, null, 9.0),
+                new Review("b", null, null, 8.0));
+
+        // when
+        when(reviewReactiveRepository.findProjected(isA(Query.class), eq(Set.of("rating"))))
+                .thenReturn(Flux.fromIterable(reviewList));
+
+        webTestClient.get()
+                .uri(REVIEWS_URL + "?movieInfoId=1&fields=rating")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].rating").isEqualTo(9.0)
+                .jsonPath("$[0].comment").doesNotExist();
+
+        // then
+        verify(reviewReactiveRepository).findProjected(
+                argThat(query -> query.getQueryObject().get("movieInfoId").equals(1L)), eq(Set.of("rating")));
+    }
+
+    @Test
+    void getReviews_fields_validation() {
+        webTestClient.get()
+                .uri(REVIEWS_URL + "?fields=rating,password")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void streamReviews() {
+        // given
+        var reviewList = List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 1L, "Awesome Movie1", 9.0),
+                new Review(null, 2L, "Excellent Movie", 8.0));
+
         // when
         when(reviewReactiveRepository.findAll())
                 .thenReturn(Flux.fromIterable(reviewList));
 
         webTestClient.get()
                 .uri(REVIEWS_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
                 .exchange()
                 .expectStatus()
                 .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
                 .expectBodyList(Review.class)
                 .hasSize(3);
         // then
@@ -123,7 +259,7 @@ public class ReviewsUnitTest {
         var review = new Review(null, 1L, "Awesome Movie", 9.0);
 
         // when
-        when(reviewReactiveRepository.findReviewsByMovieInfoId(1L))
+        when(reviewReactiveRepository.findReviewsByMovieInfoId(eq(1L), isA(Pageable.class)))
                 .thenReturn(Flux.just(review));
 
         // then
@@ -137,7 +273,160 @@ public class ReviewsUnitTest {
                 .exchange()
                 .expectStatus()
                 .is2xxSuccessful()
-                .expectBodyList(Review.class);
+                .expectBodyList(Review.class)
+                .hasSize(1);
+
+        // movieInfoId 만 넘어와도 기본 page 크기(+1) 로 조회한다
+        verify(reviewReactiveRepository).findReviewsByMovieInfoId(eq(1L),
+                argThat(pageable -> pageable.getPageSize() == 101));
+    }
+
+    @Test
+    void getReview_defaultPageSize() {
+        // given
+        var reviewList = new ArrayList<Review>();
+        for (int i = 0; i < 101; i++) {
+            reviewList.add(new Review(String.format("r%03d", i), 1L, "Awesome Movie", 9.0));
+        }
+
+        // when
+        when(reviewReactiveRepository.findReviewsByMovieInfoId(eq(1L), isA(Pageable.class)))
+                .thenReturn(Flux.fromIterable(reviewList));
+
+        // then
+        webTestClient.get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals("X-Next-Cursor", "r099")
+                .expectBodyList(Review.class)
+                .hasSize(100);
+    }
+
+    @Test
+    void getReview_notFound() {
+        when(reviewReactiveRepository.findReviewsByMovieInfoId(eq(2L), isA(Pageable.class)))
+                .thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri(REVIEWS_URL + "?movieInfoId=2")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void getReview_deadline() {
+        // Mongo 조회가 끝나지 않는 상황
+        when(reviewReactiveRepository.findReviewsByMovieInfoId(eq(1L), isA(Pageable.class)))
+                .thenReturn(Flux.never());
+
+        webTestClient.get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .header("X-Deadline-Ms", "50")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(504);
+    }
+
+    @Test
+    void streamReviews_deadlineAfterCommit() {
+        // given
+        // 첫 review 를 보낸 뒤(응답 commit 후) deadline 보다 늦게 나머지가 온다
+        var reviewFlux = Flux.concat(
+                Flux.just(new Review("a", 1L, "Awesome Movie", 9.0)),
+                Mono.delay(Duration.ofMillis(300)).thenMany(Flux.just(
+                        new Review("b", 1L, "Awesome Movie1", 9.0),
+                        new Review("c", 1L, "Excellent Movie", 8.0))));
+
+        // when
+        when(reviewReactiveRepository.findAll())
+                .thenReturn(reviewFlux);
+
+        // then
+        // 이미 쓰기 시작한 stream 은 deadline 으로 끊지 않는다
+        webTestClient.get()
+                .uri(REVIEWS_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .header("X-Deadline-Ms", "100")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(3);
+    }
+
+    @Test
+    void getReviewsByMovieInfoIds() {
+        // given
+        var reviewList = List.of(
+                new Review("a", 1L, "Awesome Movie", 9.0),
+                new Review("b", 1L, "Awesome Movie1", 9.0),
+                new Review("c", 2L, "Excellent Movie", 8.0));
+
+        // when
+        when(reviewReactiveRepository.findReviewsByMovieInfoIdIn(List.of(1L, 2L, 3L)))
+                .thenReturn(Flux.fromIterable(reviewList));
+
+        // then
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/bulk?movieInfoIds={ids}", "1,2,3,abc")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.1.length()").isEqualTo(2)
+                .jsonPath("$.2.length()").isEqualTo(1)
+                .jsonPath("$.3.length()").isEqualTo(0)
+                .jsonPath("$.abc.length()").isEqualTo(0);
+    }
+
+    @Test
+    void getReviewsByMovieInfoIds_validation() {
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/bulk")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewSummary() {
+        // given
+        var summary = new ReviewSummary(1L, 2, 2, 17.0, 8.0, 9.0, Map.of("8", 1L, "9", 1L));
+
+        // when
+        when(reviewSummaryRepository.findById(1L))
+                .thenReturn(Mono.just(summary));
+
+        // then
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/summary?movieInfoId={id}", 1)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.reviewCount").isEqualTo(2)
+                .jsonPath("$.averageRating").isEqualTo(8.5)
+                .jsonPath("$.minRating").isEqualTo(8.0)
+                .jsonPath("$.maxRating").isEqualTo(9.0)
+                .jsonPath("$.ratingHistogram.9").isEqualTo(1);
+    }
+
+    @Test
+    void getReviewSummary_notFound() {
+        // when
+        when(reviewSummaryRepository.findById(2L))
+                .thenReturn(Mono.empty());
+
+        // then
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/summary?movieInfoId={id}", 2)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
     }
 
     @Test
@@ -147,9 +436,7 @@ public class ReviewsUnitTest {
         var reviewUpdate = new Review(null, 1L, "Not an Awesome Movie", 8.0);
 
         //when
-        when(reviewReactiveRepository.save(isA(Review.class)))
-                .thenReturn(Mono.just(new Review("abc", 1L, "Not an Awesome Movie", 8.0)));
-        when(reviewReactiveRepository.findById((String) any()))
+        when(reviewReactiveRepository.updateAndGetPrevious("abc", "Not an Awesome Movie", 8.0))
                 .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
 
         webTestClient
@@ -166,16 +453,31 @@ public class ReviewsUnitTest {
                     assertEquals(8.0, updatedReview.getRating());
                     assertEquals("Not an Awesome Movie", updatedReview.getComment());
                 });
+        // 이전 rating 은 findAndModify 가 돌려준 수정 전 문서에서 가져온다
+        verify(reviewSummaryRepository).changeRating(1L, 9.0, 8.0);
+        verify(reviewEventChangeStream).publishUpdated(new Review("abc", 1L, "Not an Awesome Movie", 8.0));
+    }
+
+    @Test
+    void updateReview_notFound() {
+        when(reviewReactiveRepository.updateAndGetPrevious(any(), any(), any()))
+                .thenReturn(Mono.empty());
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, 1L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus().isNotFound();
+
+        verifyNoInteractions(reviewEventChangeStream);
+        verify(reviewSummaryRepository, never()).changeRating(any(), any(), any());
     }
 
     @Test
     void deleteReview() {
-        when(reviewReactiveRepository.save(isA(Review.class)))
-                .thenReturn(Mono.just(new Review("abc", 1L, "Not an Awesome Movie", 8.0)));
-        when(reviewReactiveRepository.findById((String) any()))
+        when(reviewReactiveRepository.removeAndGet("abc"))
                 .thenReturn(Mono.just(new Review("abc", 1L, "Not an Awesome Movie", 9.0)));
-        when(reviewReactiveRepository.deleteById((String) any()))
-                .thenReturn(Mono.empty());
 
         webTestClient.delete()
                 .uri(REVIEWS_URL + "/{id}", "abc")
@@ -183,5 +485,89 @@ public class ReviewsUnitTest {
                 .expectStatus()
                 .isNoContent();
 
+        verify(reviewSummaryRepository).removeReview(new Review("abc", 1L, "Not an Awesome Movie", 9.0));
+        verify(reviewEventChangeStream).publishDeleted(new Review("abc", 1L, "Not an Awesome Movie", 9.0));
+    }
+
+    @Test
+    void deleteReview_alreadyDeleted() {
+        // 동시에 온 다른 삭제 요청이 먼저 지웠으면 summary / stream 은 건드리지 않는다
+        when(reviewReactiveRepository.removeAndGet("abc"))
+                .thenReturn(Mono.empty());
+
+        webTestClient.delete()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        verify(reviewSummaryRepository, never()).removeReview(any());
+        verifyNoInteractions(reviewEventChangeStream);
+    }
+
+    @Test
+    void streamReviewEvents() {
+        var event = ReviewEvent.created(new Review("abc", 1L, "Awesome Movie", 9.0));
+        event.setSequence(3);
+        event.setPosition("e-3");
+        when(reviewStreamHub.subscribe(Set.of(1L, 2L), null))
+                .thenReturn(Flux.just(event));
+
+        var events = webTestClient.get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId=1,2")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(ReviewEvent.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(List.of(event), events);
+    }
+
+    @Test
+    void streamReviewEvents_sse_resume() {
+        var event = ReviewEvent.deleted(new Review("abc", 1L, "Awesome Movie", 9.0));
+        event.setSequence(4);
+        event.setPosition("e-4");
+        when(reviewStreamHub.subscribe(Set.of(1L), "e-3"))
+                .thenReturn(Flux.just(event));
+
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId=1")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", "e-3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .consumeWith(result -> {
+                    var body = Objects.requireNonNull(result.getResponseBody());
+                    assert body.contains("id:e-4");
+                    assert body.contains("event:DELETED");
+                });
+    }
+
+    @Test
+    void streamReviewEvents_validation() {
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId=abc")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verifyNoInteractions(reviewStreamHub);
+    }
+
+    @Test
+    void streamReviewEvents_gone() {
+        when(reviewStreamHub.subscribe(Set.of(1L), "old-1"))
+                .thenReturn(Flux.error(new ReviewStreamGoneException("Review stream position old-1 is no longer available")));
+
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId=1&after=old-1")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isEqualTo(410);
     }
 }
@@ -0,0 +1,235 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.exception.ReviewStreamGoneException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewStreamHubTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private ReviewStreamHub hub(int replaySize, int bufferSize) {
+        return new ReviewStreamHub(replaySize, bufferSize, meterRegistry);
+    }
+
+    private static Review review(String id, long movieInfoId) {
+        return new Review(id, movieInfoId, "comment " + id, 8.0);
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    @Test
+    void liveEventsByMovieInfoId() {
+        // given
+        var hub = hub(100, 10);
+        hub.publishCreated(review("before", 1L));
+
+        // then
+        StepVerifier.create(hub.subscribe(Set.of(1L, 3L), null))
+                .then(() -> {
+                    hub.publishCreated(review("a", 1L));
+                    hub.publishCreated(review("b", 2L));
+                    hub.publishUpdated(review("a", 1L));
+                    hub.publishDeleted(review("c", 3L));
+                })
+                .assertNext(event -> {
+                    assertEquals(ReviewEvent.Type.CREATED, event.getType());
+                    assertEquals("a", event.getReviewId());
+                    assertEquals(2, event.getSequence());
+                })
+                .assertNext(event -> assertEquals(ReviewEvent.Type.UPDATED, event.getType()))
+                .assertNext(event -> {
+                    assertEquals(ReviewEvent.Type.DELETED, event.getType());
+                    assertEquals(3L, event.getMovieInfoId());
+                    assertEquals(5, event.getSequence());
+                })
+                .thenCancel()
+                .verify();
+        assertEquals(0, hub.subscriberCount());
+    }
+
+    @Test
+    void resumeFromPosition() {
+        // given
+        var hub = hub(100, 10);
+        var first = ReviewEvent.created(review("a", 1L));
+        hub.publish(first);
+        hub.publishCreated(review("b", 2L));
+        hub.publishCreated(review("c", 1L));
+
+        // then : 마지막으로 받은 position 다음부터 catch-up 후 live 로 이어진다
+        StepVerifier.create(hub.subscribe(Set.of(1L), first.getPosition()))
+                .assertNext(event -> assertEquals("c", event.getReviewId()))
+                .then(() -> hub.publishCreated(review("d", 1L)))
+                .assertNext(event -> assertEquals("d", event.getReviewId()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void slowSubscriberCatchesUpFromRing() {
+        // given
+        var hub = hub(100, 2);
+
+        // then : live queue 가 넘쳐도 ring buffer 에서 다시 읽어 빠짐없이 순서대로 받는다
+        StepVerifier.create(hub.subscribe(Set.of(1L), null).map(ReviewEvent::getReviewId), 0)
+                .then(() -> {
+                    for (var i = 0; i < 10; i++) {
+                        hub.publishCreated(review("r" + i, 1L));
+                        hub.publishCreated(review("other" + i, 2L));
+                    }
+                })
+                .thenRequest(10)
+                .expectNextSequence(expectedReviewIds(10))
+                .thenCancel()
+                .verify();
+        assertTrue(count("reviews.stream.overflow") > 0);
+    }
+
+    private static List<String> expectedReviewIds(int size) {
+        var ids = new ArrayList<String>();
+        for (var i = 0; i < size; i++) {
+            ids.add("r" + i);
+        }
+        return ids;
+    }
+
+    @Test
+    void lappedSubscriberIsGone() {
+        // given
+        var hub = hub(4, 1);
+
+        // then
+        StepVerifier.create(hub.subscribe(Set.of(1L), null), 0)
+                .then(() -> {
+                    for (var i = 0; i < 10; i++) {
+                        hub.publishCreated(review("r" + i, 1L));
+                    }
+                })
+                .thenRequest(10)
+                .expectError(ReviewStreamGoneException.class)
+                .verify();
+        assertEquals(0, hub.subscriberCount());
+    }
+
+    @Test
+    void positionNoLongerAvailable() {
+        // given
+        var hub = hub(4, 10);
+        var first = ReviewEvent.created(review("a", 1L));
+        hub.publish(first);
+        for (var i = 0; i < 5; i++) {
+            hub.publishCreated(review("r" + i, 1L));
+        }
+
+        // then
+        StepVerifier.create(hub.subscribe(Set.of(1L), first.getPosition()))
+                .expectError(ReviewStreamGoneException.class)
+                .verify();
+        // 다른 epoch(재시작 전)의 position
+        StepVerifier.create(hub.subscribe(Set.of(1L), "0-1"))
+                .expectError(ReviewStreamGoneException.class)
+                .verify();
+        StepVerifier.create(hub.subscribe(Set.of(1L), "abc"))
+                .expectError(ReviewDataException.class)
+                .verify();
+        assertEquals(2, count("reviews.stream.gone"));
+    }
+
+    @Test
+    void reset() {
+        // given
+        var hub = hub(100, 10);
+        var first = ReviewEvent.created(review("a", 1L));
+        hub.publish(first);
+
+        // when : source 가 이벤트를 잃으면 구독 중이던 client 와 그 이전 position 은 410
+        StepVerifier.create(hub.subscribe(Set.of(1L), null))
+                .then(hub::reset)
+                .expectError(ReviewStreamGoneException.class)
+                .verify();
+        StepVerifier.create(hub.subscribe(Set.of(1L), first.getPosition()))
+                .expectError(ReviewStreamGoneException.class)
+                .verify();
+        assertEquals(0, hub.subscriberCount());
+
+        // then : position 없이 다시 구독하면 이후 이벤트를 받고, 그 position 으로는 이어받을 수 있다
+        var next = ReviewEvent.created(review("b", 1L));
+        StepVerifier.create(hub.subscribe(Set.of(1L), null))
+                .then(() -> hub.publish(next))
+                .assertNext(event -> assertEquals("b", event.getReviewId()))
+                .thenCancel()
+                .verify();
+        StepVerifier.create(hub.subscribe(Set.of(1L), next.getPosition()))
+                .then(() -> hub.publishCreated(review("c", 1L)))
+                .assertNext(event -> assertEquals("c", event.getReviewId()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void concurrentPublish() throws InterruptedException {
+        // given
+        var hub = hub(100_000, 100_000);
+        var producers = 8;
+        var perProducer = 2000;
+        var received = Collections.synchronizedList(new ArrayList<ReviewEvent>());
+        var subscription = hub.subscribe(Set.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L), null)
+                .subscribe(received::add);
+        var executor = Executors.newFixedThreadPool(producers);
+        var start = new CountDownLatch(1);
+
+        // when
+        for (var p = 0; p < producers; p++) {
+            long movieInfoId = p;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (var i = 0; i < perProducer; i++) {
+                    hub.publishCreated(review(movieInfoId + "-" + i, movieInfoId));
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // then : 유실 없이 sequence 순서대로 받는다
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (received.size() < producers * perProducer && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        subscription.dispose();
+        assertEquals(producers * perProducer, received.size());
+        for (var i = 0; i < received.size(); i++) {
+            assertEquals(i + 1, received.get(i).getSequence());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.reactivespring.benchmark;
+
+import com.reactivespring.util.ReactiveTrace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청 하나가 items 개의 element 를 내려보내는 응답의 구독 1건 비용.
+ * - baseline : 로그 없음
+ * - logOperator : 기존 .log() (signal 마다 INFO 로그를 동기로 쓴다)
+ * - traceOff : ReactiveTrace, 샘플링되지 않은 요청 (대부분의 요청)
+ * - traceSampled : ReactiveTrace, 샘플링된 요청 (구독당 한 줄, async appender)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djmh.log.file=build/tmp/jmh/reactive-trace.log")
+public class ReactiveTraceBenchmark {
+
+    @Param({"1", "100"})
+    int items;
+
+    Flux<Integer> source;
+
+    @Setup
+    public void setUp() {
+        source = Flux.range(0, items);
+    }
+
+    @Benchmark
+    public Long baseline() {
+        return source.count().block();
+    }
+
+    @Benchmark
+    public Long logOperator() {
+        return source.log().count().block();
+    }
+
+    @Benchmark
+    public Long traceOff() {
+        return source.transformDeferredContextual(ReactiveTrace.flux("GET /v1/movies/{id}", "abc"))
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public Long traceSampled() {
+        return source.transformDeferredContextual(ReactiveTrace.flux("GET /v1/movies/{id}", "abc"))
+                .count()
+                .contextWrite(ReactiveTrace::sampled)
+                .block();
+    }
+}
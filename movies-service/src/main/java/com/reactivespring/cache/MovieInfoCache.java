@@ -0,0 +1,130 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.reactivespring.config.MovieInfoCacheProperties;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.util.Deadline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * MoviesInfoRestClient 앞단의 in-process 캐시.
+ * 같은 id 에 대한 동시 miss 는 Caffeine AsyncCache 가 하나의 future 로 합쳐서 downstream 호출은 한 번만 나간다.
+ * 값이 비어있는 Optional 은 404 를 캐싱한 것 (negative caching).
+ */
+@Component
+@Slf4j
+public class MovieInfoCache {
+
+    private final MovieInfoCacheProperties properties;
+    private final AsyncCache<String, Optional<MovieInfo>> cache;
+
+    public MovieInfoCache(MovieInfoCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new TtlExpiry(properties))
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "movieInfo");
+    }
+
+    public Mono<MovieInfo> get(String movieInfoId, Function<String, Mono<MovieInfo>> loader) {
+        if (!properties.isEnabled()) {
+            return loader.apply(movieInfoId);
+        }
+
+        // 캐시 miss 로 조회를 시작한 구독자의 Context(trace 등)로 loader 를 실행하되,
+        // 조회는 다른 구독자와 공유되므로 그 구독자의 deadline 대신 캐시의 loadTimeout 을 deadline 으로 쓴다
+        return Mono.deferContextual(context -> {
+            var future = cache.get(movieInfoId, (id, executor) -> load(id, key -> Deadline.timeout(loader.apply(key))
+                    .contextWrite(ctx -> ctx.put(Deadline.class, Deadline.after(properties.getLoadTimeout())))
+                    .contextWrite(context)));
+
+            // 구독 취소가 다른 구독자와 공유 중인 future 를 cancel 하지 않도록 dependent future 로 감싼다
+            // 각 구독자의 deadline 은 자기 대기에만 적용한다
+            return Deadline.timeout(Mono.fromFuture(future.thenApply(Function.identity())));
+        })
+                .flatMap(movieInfo -> movieInfo
+                        .map(Mono::just)
+                        .orElseGet(() -> Mono.error(notFound(movieInfoId))));
+    }
+
+    public void put(MovieInfo movieInfo) {
+        cache.put(movieInfo.getMovieInfoId(), CompletableFuture.completedFuture(Optional.of(movieInfo)));
+    }
+
+    // 이미 캐싱된 id 만 새 값으로 교체 (캐시에 없던 id 는 추가하지 않는다)
+    public void refresh(MovieInfo movieInfo) {
+        cache.asMap().computeIfPresent(movieInfo.getMovieInfoId(),
+                (id, cached) -> CompletableFuture.completedFuture(Optional.of(movieInfo)));
+    }
+
+    public void evict(String movieInfoId) {
+        cache.synchronous().invalidate(movieInfoId);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    private CompletableFuture<Optional<MovieInfo>> load(String movieInfoId, Function<String, Mono<MovieInfo>> loader) {
+        log.debug("movieInfo cache miss : {}", movieInfoId);
+        return loader.apply(movieInfoId)
+                .map(Optional::of)
+                .onErrorResume(ex -> properties.isCacheNotFound() && isNotFound(ex),
+                        ex -> Mono.just(Optional.empty()))
+                .toFuture();
+    }
+
+    private static boolean isNotFound(Throwable ex) {
+        return ex instanceof MoviesInfoClientException
+                && Integer.valueOf(HttpStatus.NOT_FOUND.value()).equals(((MoviesInfoClientException) ex).getStatusCode());
+    }
+
+    private static MoviesInfoClientException notFound(String movieInfoId) {
+        return new MoviesInfoClientException(
+                "There is no MovieInfo Available for the passed in Id : " + movieInfoId,
+                HttpStatus.NOT_FOUND.value()
+        );
+    }
+
+    // 정상 값은 ttl, 404 는 notFoundTtl 동안 유지
+    private static class TtlExpiry implements Expiry<String, Optional<MovieInfo>> {
+
+        private final long ttlNanos;
+        private final long notFoundTtlNanos;
+
+        TtlExpiry(MovieInfoCacheProperties properties) {
+            this.ttlNanos = properties.getTtl().toNanos();
+            this.notFoundTtlNanos = properties.getNotFoundTtl().toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<MovieInfo> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : notFoundTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<MovieInfo> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<MovieInfo> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
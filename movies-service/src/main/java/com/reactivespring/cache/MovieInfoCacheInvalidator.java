@@ -0,0 +1,93 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.config.MovieInfoCacheProperties;
+import com.reactivespring.domain.MovieInfoEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * movies-info-service 의 change feed(/v1/movieinfos/events)를 구독해서 MovieInfoCache 를 갱신한다.
+ * 연결이 끊긴 동안의 변경은 알 수 없으므로 (재)연결 시점과 끊긴 시점에 캐시 전체를 비운다.
+ */
+@Component
+@Slf4j
+public class MovieInfoCacheInvalidator {
+
+    private final WebClient webClient;
+    private final MovieInfoCache movieInfoCache;
+    private final MovieInfoCacheProperties properties;
+
+    @Value("${restClient.moviesInfoUrl}")
+    private String movieInfoUrl;
+
+    private Disposable subscription;
+
+    public MovieInfoCacheInvalidator(@Qualifier("moviesInfoStreamWebClient") WebClient webClient, MovieInfoCache movieInfoCache, MovieInfoCacheProperties properties) {
+        this.webClient = webClient;
+        this.movieInfoCache = movieInfoCache;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (!properties.isEnabled() || !properties.isInvalidationEnabled()) {
+            return;
+        }
+        subscription = movieInfoEvents()
+                .subscribe(this::handle);
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    void handle(MovieInfoEvent event) {
+        log.debug("movieInfo event received : {} {}", event.getType(), event.getMovieInfoId());
+        switch (event.getType()) {
+            case UPDATED:
+                movieInfoCache.refresh(event.getMovieInfo());
+                break;
+            case CREATED:   // 404 로 캐싱되어 있던 항목을 지운다
+            case DELETED:
+                movieInfoCache.evict(event.getMovieInfoId());
+                break;
+        }
+    }
+
+    private Flux<MovieInfoEvent> movieInfoEvents() {
+        return webClient.get()
+                .uri(movieInfoUrl.concat("/events"))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(MovieInfoEvent.class)
+                .doOnSubscribe(s -> {
+                    log.info("subscribing movieInfo change feed");
+                    movieInfoCache.invalidateAll();
+                })
+                // 서버가 stream 을 정상 종료해도 재연결하도록 에러로 바꾼다
+                .concatWith(Mono.error(new IllegalStateException("movieInfo change feed completed")))
+                .doOnError(ex -> {
+                    log.warn("movieInfo change feed disconnected : {}", ex.getMessage());
+                    movieInfoCache.invalidateAll();
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(properties.getInvalidationMaxBackoff())
+                        .transientErrors(true));
+    }
+}
@@ -0,0 +1,37 @@
+package com.reactivespring.client;
+
+import com.reactivespring.util.Deadline;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+// 남은 시간을 X-Deadline-Ms 로 downstream 에 전달하고, 이미 지난 요청은 호출하지 않는다
+// 응답이 네트워크를 거쳐 돌아오는 시간만큼(margin) 빼고 전달해서 downstream 이 먼저 포기하게 한다
+public class DeadlineExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private final Duration margin;
+
+    public DeadlineExchangeFilterFunction(Duration margin) {
+        this.margin = margin;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> context.<Deadline>getOrEmpty(Deadline.class)
+                .map(deadline -> {
+                    var remaining = deadline.remaining().minus(margin);
+                    if (remaining.isNegative() || remaining.isZero()) {
+                        return Mono.<ClientResponse>error(Deadline.exceeded());
+                    }
+                    var deadlineRequest = ClientRequest.from(request)
+                            .headers(headers -> headers.set(Deadline.HEADER, String.valueOf(remaining.toMillis())))
+                            .build();
+                    return Deadline.timeout(next.exchange(deadlineRequest));
+                })
+                .orElseGet(() -> next.exchange(request)));
+    }
+}
@@ -1,34 +1,71 @@
 package com.reactivespring.client;
 
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.config.HttpClientProperties;
+import com.reactivespring.config.ResilienceConfig;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
-import com.reactivespring.util.RetryUtil;
+import com.reactivespring.util.AdaptiveRetry;
+import com.reactivespring.util.ReactiveTrace;
+import com.reactivespring.util.RequestHedger;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Component
 @Slf4j
 public class MoviesInfoRestClient {
     private final WebClient webClient;
+    private final MovieInfoCache movieInfoCache;
+    private final AdaptiveRetry retry;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final RequestHedger hedger;
 
     @Value("${restClient.moviesInfoUrl}")
     private String movieInfoUrl;
 
-    public MoviesInfoRestClient(WebClient webClient) {
+    public MoviesInfoRestClient(@Qualifier("moviesInfoWebClient") WebClient webClient, MovieInfoCache movieInfoCache,
+                                HttpClientProperties httpClientProperties, MeterRegistry meterRegistry,
+                                CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry) {
         this.webClient = webClient;
+        this.movieInfoCache = movieInfoCache;
+        this.retry = new AdaptiveRetry(ResilienceConfig.MOVIES_INFO, MoviesInfoServerException.class::isInstance,
+                httpClientProperties.getRetry(), meterRegistry);
+        // circuit 이 open 이거나 bulkhead 가 가득 차면 호출하지 않고 바로 실패 (503)
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(ResilienceConfig.MOVIES_INFO);
+        this.bulkhead = bulkheadRegistry.bulkhead(ResilienceConfig.MOVIES_INFO);
+        this.hedger = new RequestHedger(ResilienceConfig.MOVIES_INFO, httpClientProperties.getHedge(), meterRegistry);
     }
 
     public Mono<MovieInfo> retrieveMovieInfo(String movieInfoId) {
-        log.info("retrieve movieInfo ------");
+        // 캐시 miss 일 때만 호출되고, hedge 가 켜져 있으면 느린 응답은 한 번 더 호출해서 먼저 온 응답을 사용
+        return movieInfoCache.get(movieInfoId, id -> hedger.hedge(() -> fetchMovieInfo(id)));
+    }
+
+    private Mono<MovieInfo> fetchMovieInfo(String movieInfoId) {
+        log.debug("retrieve movieInfo ------");
 
         var url = movieInfoUrl.concat("/{id}");
 
@@ -59,7 +96,51 @@ public class MoviesInfoRestClient {
                 })
                 .bodyToMono(MovieInfo.class)
 //                .retry(3)
-                .retryWhen(RetryUtil.retrySpec())
-                .log();
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retry)
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferredContextual(ReactiveTrace.mono("movies-info GET /v1/movieinfos/{id}", movieInfoId));
+    }
+
+    // 여러 id 를 한 번의 호출로 조회 (GET /v1/movieinfos?ids=a,b,c)
+    public Flux<MovieInfo> retrieveMovieInfos(List<String> movieInfoIds) {
+        return retrieveMovieInfos(movieInfoIds, List.of());
+    }
+
+    // fields 를 넘기면 movies-info-service 가 해당 필드만 조회해서 내려준다 (movieInfoId 는 항상 포함)
+    public Flux<MovieInfo> retrieveMovieInfos(List<String> movieInfoIds, List<String> fields) {
+        log.debug("retrieve movieInfos ------");
+        Optional<String> fieldsParam = fields == null || fields.isEmpty()
+                ? Optional.empty()
+                : Optional.of(String.join(",", fields));
+        // id 는 uri template 변수로 넘긴다 (http.client.requests 의 uri tag 가 id 마다 달라지지 않도록)
+        var uriTemplate = UriComponentsBuilder.fromHttpUrl(movieInfoUrl)
+                .queryParam("ids", "{ids}")
+                .queryParamIfPresent("fields", fieldsParam.map(f -> "{fields}"))
+                .build().toUriString();
+
+        return webClient.get()
+                .uri(uriTemplate, Map.of("ids", String.join(",", movieInfoIds), "fields", fieldsParam.orElse("")))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
+                    log.info("Status code is : {}", clientResponse.statusCode().value());
+
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(responseMessage -> Mono.error(new MoviesInfoClientException(
+                                    responseMessage, clientResponse.statusCode().value()
+                            )));
+                })
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> {
+                    log.info("Status code is : {}", clientResponse.statusCode().value());
+
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException(
+                                    "Server Exception in MoviesInfoService " + responseMessage
+                            )));
+                })
+                .bodyToFlux(MovieInfo.class)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retry)
+                .transformDeferred(BulkheadOperator.of(bulkhead));
     }
 }
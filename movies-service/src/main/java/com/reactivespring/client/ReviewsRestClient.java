@@ -1,40 +1,82 @@
 package com.reactivespring.client;
 
+import com.reactivespring.config.HttpClientProperties;
+import com.reactivespring.config.ResilienceConfig;
 import com.reactivespring.domain.Review;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsClientException;
 import com.reactivespring.exception.ReviewsServerException;
-import com.reactivespring.util.RetryUtil;
+import com.reactivespring.util.AdaptiveRetry;
+import com.reactivespring.util.Deadline;
+import com.reactivespring.util.ReactiveTrace;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
 @Component
 @Slf4j
 public class ReviewsRestClient {
+    private static final byte[] EMPTY_ARRAY = "[]".getBytes(StandardCharsets.UTF_8);
+
     private final WebClient webClient;
+    private final AdaptiveRetry retry;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
 
     @Value("${restClient.reviewsUrl}")
     private String reviewInfoUrl;
 
-    public ReviewsRestClient(WebClient webClient) {
+    public ReviewsRestClient(@Qualifier("reviewsWebClient") WebClient webClient,
+                             HttpClientProperties httpClientProperties, MeterRegistry meterRegistry,
+                             CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry) {
         this.webClient = webClient;
+        this.retry = new AdaptiveRetry(ResilienceConfig.REVIEWS, ReviewsServerException.class::isInstance,
+                httpClientProperties.getRetry(), meterRegistry);
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(ResilienceConfig.REVIEWS);
+        this.bulkhead = bulkheadRegistry.bulkhead(ResilienceConfig.REVIEWS);
     }
 
     public Flux<Review> retrieveReviews(String movieId) {
-        log.info("retrieve reviews ------");
-        var uri = UriComponentsBuilder.fromHttpUrl(reviewInfoUrl)
-                .queryParam("movieInfoId", movieId)
-                .buildAndExpand().toUriString();
+        return retrieveReviews(movieId, List.of());
+    }
+
+    // fields 를 넘기면 reviews-service 가 해당 필드만 조회해서 내려준다 (예: rating)
+    // reviews-service 의 JSON 목록 응답은 기본 page 크기까지만 내려오므로, movie 의 review 전체를 NDJSON stream 으로 받는다
+    public Flux<Review> retrieveReviews(String movieId, List<String> fields) {
+        log.debug("retrieve reviews ------");
+        var fieldsParam = fieldsParam(fields);
 
         return webClient.get()
-                .uri(uri)
+                .uri(uriTemplate("", "movieInfoId", fieldsParam), uriVariables(movieId, fieldsParam))
+                .accept(MediaType.APPLICATION_NDJSON)
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
                     log.info("Status code is : {}", clientResponse.statusCode().value());
@@ -56,8 +98,171 @@ public class ReviewsRestClient {
                             )));
                 })
                 .bodyToFlux(Review.class)
-                .retryWhen(RetryUtil.retrySpec())
-                .log();
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retry)
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .onErrorResume(ReviewsRestClient::isRejected, ex -> {
+                    log.warn("reviews call rejected, degrade to empty reviews : {}", ex.getMessage());
+                    return Flux.empty();
+                })
+                .transformDeferredContextual(ReactiveTrace.flux("reviews GET /v1/reviews", movieId));
+    }
+
+    // reviews-service 응답 body(JSON 배열)를 decode 하지 않고 DataBuffer 그대로 넘긴다 (passthrough 응답용)
+    // status 에러는 body 를 읽기 전에 Mono 에서 나오므로, retry / circuit breaker / bulkhead 는 응답 헤더까지만 적용된다
+    // 404 또는 circuit open / bulkhead full 이면 빈 배열로 응답한다
+    // body 는 bodyHandler 안에서만 쓸 수 있고, bodyHandler 의 결과가 끝나거나 에러 / cancel 되면 읽지 않은 body 를 버린다
+    // (이미 읽은 body 는 다시 구독할 수 없으므로 drain 이 아무 것도 하지 않는다)
+    // (usingWhen 으로 응답 lifecycle 에 묶여 있으므로, 응답 헤더를 받는 중에 cancel 되어도 connection 이 반납된다)
+    // Deadline 은 응답 헤더를 받을 때까지만 적용한다
+    // JSON 배열을 그대로 넘겨야 하므로 JSON 목록 응답을 받는다 (reviews.page.default-size 까지만 내려오고 나머지는 X-Next-Cursor 로 이어진다)
+    public <T> Flux<T> retrieveReviewsBody(String movieId, List<String> fields,
+                                           Function<Flux<DataBuffer>, Publisher<T>> bodyHandler) {
+        log.debug("retrieve reviews body ------");
+        return Flux.usingWhen(Deadline.timeout(reviewsBody(movieId, fields)),
+                bodyHandler,
+                // bodyHandler 가 body 를 구독하지 않고 끝났을 수도 있다 (예: movieInfo 가 empty)
+                ReviewsRestClient::drain,
+                (body, ex) -> drain(body),
+                ReviewsRestClient::drain);
+    }
+
+    private Mono<Flux<DataBuffer>> reviewsBody(String movieId, List<String> fields) {
+        return reviewsEntity(movieId, fields, MediaType.APPLICATION_JSON, DataBuffer.class,
+                        body -> drain(body).thenMany(emptyArray()))
+                .onErrorResume(ReviewsRestClient::isRejected, ex -> {
+                    log.warn("reviews call rejected, degrade to empty reviews : {}", ex.getMessage());
+                    return Mono.just(emptyArray());
+                });
+    }
+
+    // review 가 많은 movie 의 스트리밍 응답용 (client 가 읽는 만큼 reviews-service 에서 읽는다)
+    // retrieveReviews 처럼 body 전체에 circuit breaker / bulkhead 를 걸면 client 가 천천히 읽는 동안 slow call 로 기록되고
+    // bulkhead permit 도 계속 점유하므로, retrieveReviewsBody 와 마찬가지로 응답 헤더까지만 적용한다
+    // 404 또는 circuit open / bulkhead full 이면 review 없이 끝난다
+    public Flux<Review> streamReviews(String movieId, List<String> fields) {
+        log.debug("stream reviews ------");
+        return reviewsEntity(movieId, fields, MediaType.APPLICATION_NDJSON, Review.class, body -> body
+                        .onErrorResume(ex -> Flux.empty())
+                        .thenMany(Flux.empty()))
+                .onErrorResume(ReviewsRestClient::isRejected, ex -> {
+                    log.warn("reviews call rejected, degrade to empty reviews : {}", ex.getMessage());
+                    return Mono.just(Flux.empty());
+                })
+                .flatMapMany(Function.identity())
+                .transformDeferredContextual(ReactiveTrace.flux("reviews GET /v1/reviews (stream)", movieId));
+    }
+
+    // 응답 헤더까지 받은 뒤 아직 읽지 않은 body 를 넘긴다. retry / circuit breaker / bulkhead 는 여기까지만 적용된다
+    // 404 면 body 대신 notFound(body) 를 넘긴다 (body 를 읽어서 버리고 빈 결과로 끝나도록)
+    private <T> Mono<Flux<T>> reviewsEntity(String movieId, List<String> fields, MediaType accept, Class<T> elementClass,
+                                             Function<Flux<T>, Flux<T>> notFound) {
+        var fieldsParam = fieldsParam(fields);
+
+        return webClient.get()
+                .uri(uriTemplate("", "movieInfoId", fieldsParam), uriVariables(movieId, fieldsParam))
+                .accept(accept)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
+                    log.info("Status code is : {}", clientResponse.statusCode().value());
+
+                    if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
+                        return Mono.empty();
+                    }
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(responseMessage ->
+                                    Mono.error(new ReviewsClientException(responseMessage))
+                            );
+                })
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> {
+                    log.info("Status code is : {}", clientResponse.statusCode().value());
+
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(responseMessage -> Mono.error(new ReviewsServerException(
+                                    "Server Exception in ReviewsService " + responseMessage
+                            )));
+                })
+                .toEntityFlux(elementClass)
+                .map(entity -> entity.getStatusCode().equals(HttpStatus.NOT_FOUND)
+                        ? notFound.apply(entity.getBody())
+                        : entity.getBody())
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retry)
+                .transformDeferred(BulkheadOperator.of(bulkhead));
+    }
+
+    // 쓰지 않을 body 를 읽어서 버린다 (connection 반납). 이미 구독된 body 면 아무 것도 하지 않는다
+    static Mono<Void> drain(Flux<DataBuffer> body) {
+        return body.doOnNext(DataBufferUtils::release)
+                .then()
+                .onErrorResume(ex -> Mono.empty());
+    }
+
+    private static Flux<DataBuffer> emptyArray() {
+        return Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(EMPTY_ARRAY)));
+    }
+
+    // 여러 movieId 의 review 를 한 번의 호출로 조회 (GET /v1/reviews/bulk?movieInfoIds=1,2,3)
+    // 응답은 movieId 별로 묶인 review 목록
+    public Mono<Map<String, List<Review>>> retrieveReviewsByMovieIds(List<String> movieIds) {
+        return retrieveReviewsByMovieIds(movieIds, List.of());
+    }
+
+    public Mono<Map<String, List<Review>>> retrieveReviewsByMovieIds(List<String> movieIds, List<String> fields) {
+        log.debug("retrieve reviews bulk ------");
+        var fieldsParam = fieldsParam(fields);
+
+        return webClient.get()
+                .uri(uriTemplate("/bulk", "movieInfoIds", fieldsParam), uriVariables(String.join(",", movieIds), fieldsParam))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
+                    log.info("Status code is : {}", clientResponse.statusCode().value());
+
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(responseMessage ->
+                                    Mono.error(new ReviewsClientException(responseMessage))
+                            );
+                })
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> {
+                    log.info("Status code is : {}", clientResponse.statusCode().value());
+
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(responseMessage -> Mono.error(new ReviewsServerException(
+                                    "Server Exception in ReviewsService " + responseMessage
+                            )));
+                })
+                .bodyToMono(new ParameterizedTypeReference<Map<String, List<Review>>>() {})
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retry)
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .onErrorResume(ReviewsRestClient::isRejected, ex -> {
+                    log.warn("reviews bulk call rejected, degrade to empty reviews : {}", ex.getMessage());
+                    return Mono.just(Map.of());
+                });
+    }
+
+    // circuit open / bulkhead full 이면 review 없이 응답한다 (review 는 없어도 movie 응답은 의미가 있으므로)
+    private static boolean isRejected(Throwable ex) {
+        return ex instanceof CallNotPermittedException || ex instanceof BulkheadFullException;
+    }
+
+    // id 는 uri template 변수로 넘긴다 (http.client.requests 의 uri tag 가 id 마다 달라지지 않도록)
+    private String uriTemplate(String path, String idParam, Optional<String> fieldsParam) {
+        return UriComponentsBuilder.fromHttpUrl(reviewInfoUrl)
+                .path(path)
+                .queryParam(idParam, "{ids}")
+                .queryParamIfPresent("fields", fieldsParam.map(fields -> "{fields}"))
+                .build().toUriString();
+    }
+
+    private static Map<String, String> uriVariables(String ids, Optional<String> fieldsParam) {
+        return Map.of("ids", ids, "fields", fieldsParam.orElse(""));
+    }
+
+    private static Optional<String> fieldsParam(List<String> fields) {
+        return fields == null || fields.isEmpty()
+                ? Optional.empty()
+                : Optional.of(String.join(",", fields));
     }
 
 }
@@ -0,0 +1,66 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// downstream 서비스별 connection pool / timeout 설정
+// 서비스마다 pool 을 분리해서 한 쪽이 느려져도 다른 쪽 호출이 connection 을 기다리지 않도록 한다
+@Data
+@ConfigurationProperties(prefix = "http-client")
+public class HttpClientProperties {
+
+    private Pool moviesInfo = new Pool();
+    private Pool reviews = new Pool();
+    private RetrySettings retry = new RetrySettings();
+    // movies-info 단건 조회(retrieveMovieInfo)에만 적용
+    private HedgeSettings hedge = new HedgeSettings();
+
+    @Data
+    public static class Pool {
+        private int maxConnections = 100;
+        // connection 을 기다리는 요청 수 제한 (초과하면 즉시 실패)
+        private int pendingAcquireMaxCount = 200;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration responseTimeout = Duration.ofSeconds(5);
+
+        // true 면 h2c(평문 HTTP/2) 를 우선 사용하고, 서버가 지원하지 않으면 HTTP/1.1 로 통신
+        private boolean http2 = false;
+    }
+
+    // 5xx 응답에 대한 retry 설정 (budget 은 client 별로 따로 관리된다)
+    @Data
+    public static class RetrySettings {
+        private long maxAttempts = 3;
+        private Duration firstBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+
+        // 요청 대비 retry 비율 상한, 트래픽이 적을 때 허용하는 초당 retry 수, 최대로 쌓아둘 수 있는 retry 수
+        private double budgetRatio = 0.2;
+        private double budgetMinRetriesPerSecond = 10;
+        private double budgetCapacity = 100;
+    }
+
+    // 응답 시간이 percentile 을 넘는 요청에 대해 한 번 더 호출하는 hedged request 설정 (기본 비활성)
+    @Data
+    public static class HedgeSettings {
+        private boolean enabled = false;
+        private double percentile = 0.95;
+        private Duration latencyWindow = Duration.ofMinutes(1);
+        // sample 이 minSamples 보다 적으면 initialDelay 를 사용
+        private long minSamples = 20;
+        private Duration initialDelay = Duration.ofMillis(200);
+        private Duration minDelay = Duration.ofMillis(20);
+        private Duration maxDelay = Duration.ofSeconds(1);
+
+        private double maxHedgeRatio = 0.1;
+        private double minHedgesPerSecond = 1;
+        private double budgetCapacity = 10;
+    }
+}
@@ -0,0 +1,26 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "cache.movie-info")
+public class MovieInfoCacheProperties {
+
+    private boolean enabled = true;
+    private long maximumSize = 10_000;
+    private Duration ttl = Duration.ofMinutes(5);
+
+    // 404 (MoviesInfoClientException) 응답도 notFoundTtl 동안 캐싱할지 여부
+    private boolean cacheNotFound = true;
+    private Duration notFoundTtl = Duration.ofSeconds(30);
+
+    // 여러 요청이 공유하는 miss 조회는 특정 요청의 deadline 대신 이 시간 안에 끝나야 한다
+    private Duration loadTimeout = Duration.ofSeconds(10);
+
+    // movies-info-service 의 change feed 를 구독해서 변경된 항목을 evict/refresh 할지 여부
+    private boolean invalidationEnabled = true;
+    private Duration invalidationMaxBackoff = Duration.ofSeconds(30);
+}
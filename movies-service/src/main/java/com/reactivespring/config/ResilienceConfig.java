@@ -0,0 +1,72 @@
+package com.reactivespring.config;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsClientException;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+// circuit breaker / bulkhead 는 downstream 이름(movies-info, reviews)으로 등록되고
+// 상태와 호출 결과는 resilience4j.circuitbreaker.* / resilience4j.bulkhead.* metrics 로 노출된다
+@Configuration
+public class ResilienceConfig {
+
+    public static final String MOVIES_INFO = "movies-info";
+    public static final String REVIEWS = "reviews";
+
+    private final ResilienceProperties resilienceProperties;
+
+    public ResilienceConfig(ResilienceProperties resilienceProperties) {
+        this.resilienceProperties = resilienceProperties;
+    }
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(MeterRegistry meterRegistry) {
+        var registry = CircuitBreakerRegistry.ofDefaults();
+        // 4xx 와 요청 deadline 초과는 downstream 장애가 아니므로 실패로 집계하지 않는다
+        registry.circuitBreaker(MOVIES_INFO, circuitBreakerConfig(resilienceProperties.getMoviesInfo(), MoviesInfoClientException.class));
+        registry.circuitBreaker(REVIEWS, circuitBreakerConfig(resilienceProperties.getReviews(), ReviewsClientException.class));
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(MeterRegistry meterRegistry) {
+        var registry = BulkheadRegistry.ofDefaults();
+        registry.bulkhead(MOVIES_INFO, bulkheadConfig(resilienceProperties.getMoviesInfo()));
+        registry.bulkhead(REVIEWS, bulkheadConfig(resilienceProperties.getReviews()));
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    private static CircuitBreakerConfig circuitBreakerConfig(ResilienceProperties.Downstream downstream,
+                                                             Class<? extends Throwable> ignoredException) {
+        return CircuitBreakerConfig.custom()
+                .failureRateThreshold(downstream.getFailureRateThreshold())
+                .slowCallRateThreshold(downstream.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(downstream.getSlowCallDurationThreshold())
+                .slidingWindowSize(downstream.getSlidingWindowSize())
+                .minimumNumberOfCalls(downstream.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(downstream.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(downstream.getPermittedCallsInHalfOpenState())
+                .ignoreExceptions(ignoredException, DeadlineExceededException.class)
+                .build();
+    }
+
+    // reactive 호출에서 permission 을 기다리면 event loop 가 block 되므로 maxWaitDuration 은 항상 0
+    private static BulkheadConfig bulkheadConfig(ResilienceProperties.Downstream downstream) {
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(downstream.getMaxConcurrentCalls())
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+    }
+}
@@ -0,0 +1,30 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// downstream 서비스별 circuit breaker / bulkhead 설정
+@Data
+@ConfigurationProperties(prefix = "resilience")
+public class ResilienceProperties {
+
+    private Downstream moviesInfo = new Downstream();
+    private Downstream reviews = new Downstream();
+
+    @Data
+    public static class Downstream {
+        // 최근 slidingWindowSize 건 중 실패(또는 slowCallDurationThreshold 보다 느린 호출) 비율이 threshold(%) 를 넘으면 open
+        private float failureRateThreshold = 50;
+        private float slowCallRateThreshold = 50;
+        private Duration slowCallDurationThreshold = Duration.ofSeconds(2);
+        private int slidingWindowSize = 20;
+        private int minimumNumberOfCalls = 10;
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+        private int permittedCallsInHalfOpenState = 3;
+
+        // 동시에 진행할 수 있는 호출 수 (초과하면 기다리지 않고 바로 거절)
+        private int maxConcurrentCalls = 50;
+    }
+}
@@ -1,15 +1,90 @@
 package com.reactivespring.config;
 
+import com.reactivespring.client.DeadlineExchangeFilterFunction;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
+
+// downstream 서비스별로 connection pool 을 분리한 WebClient
+// pool 지표(reactor.netty.connection.provider.*)는 pool 이름(movies-info, reviews)을 tag 로 actuator metrics 에 노출된다
 @Configuration
 public class WebClientConfig {
 
+    private final HttpClientProperties httpClientProperties;
+    private final Duration deadlineMargin;
+
+    public WebClientConfig(HttpClientProperties httpClientProperties,
+                           @Value("${deadline.propagation-margin:50ms}") Duration deadlineMargin) {
+        this.httpClientProperties = httpClientProperties;
+        this.deadlineMargin = deadlineMargin;
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider moviesInfoConnectionProvider() {
+        return connectionProvider("movies-info", httpClientProperties.getMoviesInfo());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider reviewsConnectionProvider() {
+        return connectionProvider("reviews", httpClientProperties.getReviews());
+    }
+
+    @Bean
+    public WebClient moviesInfoWebClient(WebClient.Builder builder) {
+        var pool = httpClientProperties.getMoviesInfo();
+        var httpClient = httpClient(moviesInfoConnectionProvider(), pool)
+                .responseTimeout(pool.getResponseTimeout());
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(new DeadlineExchangeFilterFunction(deadlineMargin))
+                .build();
+    }
+
+    @Bean
+    public WebClient reviewsWebClient(WebClient.Builder builder) {
+        var pool = httpClientProperties.getReviews();
+        var httpClient = httpClient(reviewsConnectionProvider(), pool)
+                .responseTimeout(pool.getResponseTimeout());
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(new DeadlineExchangeFilterFunction(deadlineMargin))
+                .build();
+    }
+
+    // change feed 처럼 계속 열려 있는 stream 용
+    // pool 의 connection 을 계속 점유하지 않도록 별도 connection 을 쓰고, responseTimeout 은 걸지 않는다
     @Bean
-    public WebClient webClient(WebClient.Builder builder){
-        return builder.build();
+    public WebClient moviesInfoStreamWebClient(WebClient.Builder builder) {
+        var httpClient = HttpClient.newConnection()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) httpClientProperties.getMoviesInfo().getConnectTimeout().toMillis());
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    private static ConnectionProvider connectionProvider(String name, HttpClientProperties.Pool pool) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictInBackground())
+                .metrics(true)
+                .build();
+    }
+
+    private static HttpClient httpClient(ConnectionProvider connectionProvider, HttpClientProperties.Pool pool) {
+        var httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.getConnectTimeout().toMillis());
+        if (pool.isHttp2()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+        return httpClient;
     }
 
 }
@@ -1,34 +1,176 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.reactivespring.client.MoviesInfoRestClient;
 import com.reactivespring.client.ReviewsRestClient;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieResult;
+import com.reactivespring.domain.MovieStreamItem;
+import com.reactivespring.exception.DeadlineExceededException;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.util.Deadline;
+import com.reactivespring.util.ReactiveTrace;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @RestController
 @RequestMapping("/v1/movies")
 public class MoviesController {
 
     private final MoviesInfoRestClient moviesInfoRestClient;
     private final ReviewsRestClient reviewsRestClient;
+    private final ObjectMapper objectMapper;
+
+    private static final byte[] PASSTHROUGH_PREFIX = "{\"movieInfo\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PASSTHROUGH_SEPARATOR = ",\"reviewList\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PASSTHROUGH_SUFFIX = "}".getBytes(StandardCharsets.UTF_8);
+
+    @Value("${movies.batch.size:50}")
+    private int batchSize;
 
-    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient) {
+    @Value("${movies.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient,
+                            ObjectMapper objectMapper) {
         this.moviesInfoRestClient = moviesInfoRestClient;
         this.reviewsRestClient = reviewsRestClient;
+        this.objectMapper = objectMapper;
     }
 
+    // movieInfo, reviews 조회를 동시에 시작하고 결과를 zip 으로 합친다
+    // movieInfo 조회가 실패(404 등)하면 zip 이 진행 중인 reviews 조회를 cancel 한다
+    // reviewFields 를 넘기면 review 는 해당 필드만 조회한다 (예: reviewFields=rating)
     @GetMapping("/{id}")
-    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId) {
-        return moviesInfoRestClient.retrieveMovieInfo(movieId)
-                .flatMap(movieInfo -> {
-                    var reviewsList = reviewsRestClient.retrieveReviews(movieId)
-                            .collectList();
-                    return reviewsList.map(reviews -> new Movie(movieInfo, reviews));
-                });
+    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId,
+                                         @RequestParam(value = "reviewFields", required = false) List<String> reviewFields) {
+        var movieInfoMono = moviesInfoRestClient.retrieveMovieInfo(movieId);
+        var reviewsListMono = reviewsRestClient.retrieveReviews(movieId, reviewFields)
+                .collectList();
+
+        // 요청 deadline 안에 끝나지 않으면 504
+        return Deadline.timeout(Mono.zip(movieInfoMono, reviewsListMono, Movie::new))
+                .transformDeferredContextual(ReactiveTrace.mono("GET /v1/movies/{id}", movieId));
+    }
+
+    // review 가 많은 movie 용 스트리밍 응답 (NDJSON / SSE)
+    // 첫 줄에 movieInfo, 이후 reviews-service 에서 decode 되는 대로 review 를 한 줄씩 내려준다
+    // reviews 조회는 movieInfo 와 동시에 시작하고, movieInfo 가 나오기 전까지는 prefetch 만큼만 받아둔다
+    // 이후에는 client 의 demand 만큼만 reviews-service 에서 읽으므로 review 수와 상관없이 메모리 사용량이 일정하다
+    @GetMapping(value = "/{id}/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<MovieStreamItem> streamMovieById(@PathVariable("id") String movieId,
+                                                 @RequestParam(value = "reviewFields", required = false) List<String> reviewFields) {
+        var movieInfoMono = Deadline.timeout(moviesInfoRestClient.retrieveMovieInfo(movieId))
+                .map(MovieStreamItem::movieInfo);
+        // circuit breaker / bulkhead 는 reviews 응답 헤더까지만 적용된다 (느리게 읽는 client 가 reviews circuit 을 열지 않도록)
+        var reviewsFlux = reviewsRestClient.streamReviews(movieId, reviewFields)
+                .map(MovieStreamItem::review);
+
+        return Flux.mergeSequential(movieInfoMono, reviewsFlux)
+                .transformDeferredContextual(ReactiveTrace.flux("GET /v1/movies/{id}/stream", movieId));
+    }
+
+    // passthrough=true 이면 reviews 를 Review 객체로 decode / 다시 encode 하지 않고
+    // movieInfo envelope 뒤에 reviews-service 의 응답 JSON 배열을 DataBuffer 그대로 이어서 내려준다 (review 가 많은 movie 용)
+    // 응답 모양은 retrieveMovieById 와 같다
+    // 단, reviews-service 의 JSON 목록은 reviews.page.default-size 까지만 내려오므로 reviews 도 첫 page 까지만 포함된다
+    // (review 전체가 필요하면 /{id}/stream 을 사용한다)
+    @GetMapping(value = "/{id}", params = "passthrough=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> retrieveMovieByIdPassthrough(@PathVariable("id") String movieId,
+                                                         @RequestParam(value = "reviewFields", required = false) List<String> reviewFields,
+                                                         ServerHttpResponse response) {
+        var bufferFactory = response.bufferFactory();
+
+        return Flux.defer(() -> {
+            // movieInfo 는 reviews 와 동시에 조회를 시작하고 (첫 번째 merge source), 결과는 reviews body 를 쓰기 전에 공유해서 쓴다
+            var movieInfoMono = Deadline.timeout(moviesInfoRestClient.retrieveMovieInfo(movieId)).share();
+
+            // movieInfo 와 reviews 응답 헤더까지 받은 뒤에 쓰기 시작하므로, 에러는 응답을 쓰기 전에 status 로 내려간다
+            // reviews body 는 ReviewsRestClient 가 응답 lifecycle 에 맞춰 반납한다 (movieInfo 가 실패하거나 cancel 되어도)
+            return Flux.merge(
+                    movieInfoMono.then(Mono.<DataBuffer>empty()),
+                    reviewsRestClient.retrieveReviewsBody(movieId, reviewFields, body -> movieInfoMono
+                            .flatMapMany(movieInfo -> Flux.concat(
+                                    movieInfoPrefix(movieInfo, bufferFactory),
+                                    body,
+                                    Mono.fromCallable(() -> bufferFactory.wrap(PASSTHROUGH_SUFFIX))))));
+        });
+    }
+
+    private Mono<DataBuffer> movieInfoPrefix(MovieInfo movieInfo, DataBufferFactory bufferFactory) {
+        return Mono.fromCallable(() -> {
+            var movieInfoJson = objectMapper.writeValueAsBytes(movieInfo);
+            var buffer = bufferFactory.allocateBuffer(PASSTHROUGH_PREFIX.length + movieInfoJson.length + PASSTHROUGH_SEPARATOR.length);
+            return buffer.write(PASSTHROUGH_PREFIX)
+                    .write(movieInfoJson)
+                    .write(PASSTHROUGH_SEPARATOR);
+        });
+    }
+
+    // 여러 id 를 한 번에 조회
+    // id 들을 movies.batch.size 단위로 나눠 leaf service 의 bulk API 로 조회하고 (동시 실행 수는 movies.batch.concurrency 로 제한)
+    // 완성되는 순서대로 NDJSON 으로 내려주고, 실패한 id 는 전체를 실패시키지 않고 에러 결과로 내려준다
+    // infoFields / reviewFields 로 필요한 필드만 조회할 수 있다 (목록 화면 등)
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieResult> retrieveMoviesByIds(@RequestParam("ids") List<String> movieIds,
+                                                 @RequestParam(value = "infoFields", required = false) List<String> infoFields,
+                                                 @RequestParam(value = "reviewFields", required = false) List<String> reviewFields) {
+        return Flux.fromIterable(movieIds)
+                .distinct()
+                .buffer(batchSize)
+                .flatMap(batch -> retrieveMovieBatch(batch, infoFields, reviewFields), batchConcurrency);
+    }
+
+    private Flux<MovieResult> retrieveMovieBatch(List<String> movieIds, List<String> infoFields, List<String> reviewFields) {
+        var movieInfosMono = moviesInfoRestClient.retrieveMovieInfos(movieIds, infoFields)
+                .collectMap(MovieInfo::getMovieInfoId);
+        var reviewsMono = reviewsRestClient.retrieveReviewsByMovieIds(movieIds, reviewFields);
+
+        return Mono.zip(movieInfosMono, reviewsMono)
+                .flatMapIterable(tuple -> movieIds.stream()
+                        .map(movieId -> {
+                            var movieInfo = tuple.getT1().get(movieId);
+                            if (movieInfo == null) {
+                                return MovieResult.failure(movieId, HttpStatus.NOT_FOUND.value(),
+                                        "There is no MovieInfo Available for the passed in Id : " + movieId);
+                            }
+                            var reviews = tuple.getT2().getOrDefault(movieId, List.of());
+                            return MovieResult.success(movieId, new Movie(movieInfo, reviews));
+                        })
+                        .collect(Collectors.toList()))
+                .onErrorResume(ex -> Flux.fromIterable(movieIds)
+                        .map(movieId -> toFailure(movieId, ex)));
+    }
+
+    private static MovieResult toFailure(String movieId, Throwable ex) {
+        if (ex instanceof MoviesInfoClientException) {
+            return MovieResult.failure(movieId, ((MoviesInfoClientException) ex).getStatusCode(), ex.getMessage());
+        }
+        if (ex instanceof DeadlineExceededException) {
+            return MovieResult.failure(movieId, HttpStatus.GATEWAY_TIMEOUT.value(), ex.getMessage());
+        }
+        if (ex instanceof CallNotPermittedException || ex instanceof BulkheadFullException) {
+            return MovieResult.failure(movieId, HttpStatus.SERVICE_UNAVAILABLE.value(), ex.getMessage());
+        }
+        return MovieResult.failure(movieId, HttpStatus.INTERNAL_SERVER_ERROR.value(), ex.getMessage());
     }
 
 }
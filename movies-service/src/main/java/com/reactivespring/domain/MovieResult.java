@@ -0,0 +1,27 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// batch 조회 결과 한 건 (성공이면 movie, 실패면 statusCode/errorMessage 를 담는다)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovieResult {
+
+    private String movieId;
+    private Movie movie;
+    private Integer statusCode;
+    private String errorMessage;
+
+    public static MovieResult success(String movieId, Movie movie) {
+        return new MovieResult(movieId, movie, null, null);
+    }
+
+    public static MovieResult failure(String movieId, Integer statusCode, String errorMessage) {
+        return new MovieResult(movieId, null, statusCode, errorMessage);
+    }
+}
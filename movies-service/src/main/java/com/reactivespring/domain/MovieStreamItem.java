@@ -0,0 +1,29 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// movie 스트리밍 응답 한 줄 (첫 줄은 movieInfo, 이후는 review 한 건씩)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovieStreamItem {
+
+    public static final String MOVIE_INFO = "movieInfo";
+    public static final String REVIEW = "review";
+
+    private String type;
+    private MovieInfo movieInfo;
+    private Review review;
+
+    public static MovieStreamItem movieInfo(MovieInfo movieInfo) {
+        return new MovieStreamItem(MOVIE_INFO, movieInfo, null);
+    }
+
+    public static MovieStreamItem review(Review review) {
+        return new MovieStreamItem(REVIEW, null, review);
+    }
+}
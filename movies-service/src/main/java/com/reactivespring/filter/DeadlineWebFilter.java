@@ -0,0 +1,34 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.util.Deadline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+// 요청마다 deadline 을 정해서 Reactor Context 에 넣는다
+// client 가 X-Deadline-Ms 를 보내면 그 값을 쓰고 (deadline.max-timeout 이내), 없으면 deadline.default-timeout
+@Component
+public class DeadlineWebFilter implements WebFilter {
+
+    @Value("${deadline.default-timeout:10s}")
+    private Duration defaultTimeout;
+
+    @Value("${deadline.max-timeout:30s}")
+    private Duration maxTimeout;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var timeout = Deadline.parseHeader(exchange.getRequest().getHeaders().getFirst(Deadline.HEADER))
+                .map(requested -> requested.compareTo(maxTimeout) > 0 ? maxTimeout : requested)
+                .orElse(defaultTimeout);
+        var deadline = Deadline.after(timeout);
+
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(Deadline.class, deadline));
+    }
+}
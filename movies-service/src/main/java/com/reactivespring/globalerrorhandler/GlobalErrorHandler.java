@@ -1,6 +1,9 @@
 package com.reactivespring.globalerrorhandler;
 
+import com.reactivespring.exception.DeadlineExceededException;
 import com.reactivespring.exception.MoviesInfoClientException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +20,19 @@ public class GlobalErrorHandler {
         return ResponseEntity.status(e.getStatusCode()).body(e.getMessage());
     }
 
+    // circuit open / bulkhead full : downstream 을 호출하지 않고 바로 실패
+    @ExceptionHandler({CallNotPermittedException.class, BulkheadFullException.class})
+    public ResponseEntity<String> handleRejectedException(RuntimeException e){
+        log.error("Exception Caught in handleRejectedException : {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> handleDeadlineExceededException(DeadlineExceededException e){
+        log.error("Exception Caught in handleDeadlineExceededException : {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(e.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException e){
         log.error("Exception Caught in handleRuntimeException : {}", e.getMessage());
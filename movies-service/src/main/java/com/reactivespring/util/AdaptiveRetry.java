@@ -0,0 +1,99 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.HttpClientProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * exponential backoff + full jitter retry.
+ * 대기 시간은 0 ~ min(maxBackoff, firstBackoff * 2^n) 사이의 임의 값이라 여러 요청의 retry 가 한 시점에 몰리지 않는다.
+ * client 별 RetryBudget 을 넘는 retry 는 하지 않고 원래 에러를 그대로 내려보낸다.
+ *
+ * metrics
+ *  - http.client.retries (client, outcome=retried|exhausted|budget_exhausted)
+ *  - http.client.retry.backoff (client) : retry 로 추가된 대기 시간
+ *  - http.client.retry.budget.tokens (client)
+ */
+public class AdaptiveRetry extends Retry {
+
+    private final Predicate<Throwable> retryable;
+    private final HttpClientProperties.RetrySettings settings;
+    private final RetryBudget retryBudget;
+
+    private final Counter retried;
+    private final Counter exhausted;
+    private final Counter budgetExhausted;
+    private final Timer backoff;
+
+    public AdaptiveRetry(String client, Predicate<Throwable> retryable,
+                         HttpClientProperties.RetrySettings settings, MeterRegistry meterRegistry) {
+        this(client, retryable, settings, new RetryBudget(settings.getBudgetRatio(),
+                settings.getBudgetMinRetriesPerSecond(), settings.getBudgetCapacity()), meterRegistry);
+    }
+
+    AdaptiveRetry(String client, Predicate<Throwable> retryable, HttpClientProperties.RetrySettings settings,
+                  RetryBudget retryBudget, MeterRegistry meterRegistry) {
+        this.retryable = retryable;
+        this.settings = settings;
+        this.retryBudget = retryBudget;
+
+        this.retried = retryCounter(meterRegistry, client, "retried");
+        this.exhausted = retryCounter(meterRegistry, client, "exhausted");
+        this.budgetExhausted = retryCounter(meterRegistry, client, "budget_exhausted");
+        this.backoff = Timer.builder("http.client.retry.backoff")
+                .tag("client", client)
+                .register(meterRegistry);
+        Gauge.builder("http.client.retry.budget.tokens", retryBudget, RetryBudget::availableTokens)
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    // retryWhen 을 구독할 때마다(= 요청 1건) 호출된다
+    @Override
+    public Publisher<?> generateCompanion(Flux<RetrySignal> retrySignals) {
+        retryBudget.onRequest();
+
+        return retrySignals.concatMap(retrySignal -> {
+            var failure = retrySignal.failure();
+            if (!retryable.test(failure)) {
+                return Mono.error(failure);
+            }
+            if (retrySignal.totalRetries() >= settings.getMaxAttempts()) {
+                exhausted.increment();
+                return Mono.error(failure);
+            }
+            if (!retryBudget.tryAcquire()) {
+                budgetExhausted.increment();
+                return Mono.error(failure);
+            }
+
+            var delay = backoff(retrySignal.totalRetries());
+            retried.increment();
+            backoff.record(delay);
+            return Mono.delay(delay);
+        });
+    }
+
+    Duration backoff(long retryIndex) {
+        var exponential = settings.getFirstBackoff().toMillis() * Math.pow(2, Math.min(retryIndex, 30));
+        var cap = (long) Math.min(settings.getMaxBackoff().toMillis(), exponential);
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    private static Counter retryCounter(MeterRegistry meterRegistry, String client, String outcome) {
+        return Counter.builder("http.client.retries")
+                .tag("client", client)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,61 @@
+package com.reactivespring.util;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 요청 처리 마감 시각. DeadlineWebFilter 가 Reactor Context 에 넣어두고
+ * WebClient 호출 시 남은 시간(ms)을 X-Deadline-Ms 헤더로 downstream 에 넘긴다.
+ * (서버 간 시계 차이의 영향을 받지 않도록 절대 시각이 아닌 남은 시간을 넘긴다)
+ */
+public final class Deadline {
+
+    public static final String HEADER = "X-Deadline-Ms";
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    // 헤더가 없거나 잘못된 값은 무시한다
+    public static Optional<Duration> parseHeader(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            var millis = Long.parseLong(value.trim());
+            return millis >= 0 ? Optional.of(Duration.ofMillis(millis)) : Optional.empty();
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return remaining().isZero();
+    }
+
+    // Context 에 deadline 이 있으면 남은 시간 안에 끝나지 않을 때 DeadlineExceededException 으로 실패시킨다
+    public static <T> Mono<T> timeout(Mono<T> mono) {
+        return Mono.deferContextual(context -> context.<Deadline>getOrEmpty(Deadline.class)
+                .map(deadline -> deadline.isExpired()
+                        ? Mono.<T>error(exceeded())
+                        : mono.timeout(deadline.remaining(), Mono.error(Deadline::exceeded)))
+                .orElse(mono));
+    }
+
+    public static DeadlineExceededException exceeded() {
+        return new DeadlineExceededException("Request deadline exceeded");
+    }
+}
@@ -0,0 +1,109 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.HttpClientProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * hedged request : 첫 호출이 최근 응답 시간의 percentile 만큼 지나도 끝나지 않으면 같은 호출을 한 번 더 보내고
+ * 먼저 끝난 쪽의 결과를 사용한다 (나머지는 cancel).
+ * hedge 는 요청 대비 maxHedgeRatio 비율까지만 보낸다 (느려진 downstream 에 부하를 두 배로 주지 않도록).
+ *
+ * metrics
+ *  - http.client.hedge.latency (client) : hedge 지연 계산에 쓰는 응답 시간 분포
+ *  - http.client.hedges (client, outcome=fired|won|budget_exhausted)
+ */
+public class RequestHedger {
+
+    private final HttpClientProperties.HedgeSettings settings;
+    private final RetryBudget hedgeBudget;
+
+    private final Timer latency;
+    private final Counter fired;
+    private final Counter won;
+    private final Counter budgetExhausted;
+
+    public RequestHedger(String client, HttpClientProperties.HedgeSettings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        // 요청 1건당 maxHedgeRatio 만큼 hedge 토큰이 쌓인다
+        this.hedgeBudget = new RetryBudget(settings.getMaxHedgeRatio(), settings.getMinHedgesPerSecond(), settings.getBudgetCapacity());
+
+        this.latency = Timer.builder("http.client.hedge.latency")
+                .tag("client", client)
+                .publishPercentiles(settings.getPercentile())
+                .distributionStatisticExpiry(settings.getLatencyWindow())
+                .register(meterRegistry);
+        this.fired = hedgeCounter(meterRegistry, client, "fired");
+        this.won = hedgeCounter(meterRegistry, client, "won");
+        this.budgetExhausted = hedgeCounter(meterRegistry, client, "budget_exhausted");
+    }
+
+    public <T> Mono<T> hedge(Supplier<Mono<T>> call) {
+        if (!settings.isEnabled()) {
+            return call.get();
+        }
+
+        return Mono.defer(() -> {
+            hedgeBudget.onRequest();
+
+            var primary = timed(call.get(), true);
+            var hedged = Mono.delay(hedgeDelay())
+                    .flatMap(tick -> {
+                        if (!hedgeBudget.tryAcquire()) {
+                            budgetExhausted.increment();
+                            return Mono.<T>never();
+                        }
+                        fired.increment();
+                        return timed(call.get(), false)
+                                .doOnNext(value -> won.increment());
+                    });
+
+            // 먼저 signal 을 보낸 쪽을 사용하고 다른 쪽은 cancel
+            return Mono.firstWithSignal(primary, hedged);
+        });
+    }
+
+    // 응답 시간 sample 이 충분하지 않으면 initialDelay 를 사용
+    Duration hedgeDelay() {
+        if (latency.count() < settings.getMinSamples()) {
+            return settings.getInitialDelay();
+        }
+        for (var valueAtPercentile : latency.takeSnapshot().percentileValues()) {
+            if (valueAtPercentile.percentile() == settings.getPercentile()) {
+                var millis = (long) valueAtPercentile.value(TimeUnit.MILLISECONDS);
+                var min = settings.getMinDelay().toMillis();
+                var max = settings.getMaxDelay().toMillis();
+                return Duration.ofMillis(Math.max(min, Math.min(max, millis)));
+            }
+        }
+        return settings.getInitialDelay();
+    }
+
+    // 성공만 기록하면 hedge 에 져서 cancel 된 느린 첫 호출이 빠져 분포가 실제보다 빨라진다.
+    // 첫 호출은 cancel 되어도 그때까지 걸린 시간(실제 응답 시간의 하한)을 기록하고,
+    // hedge 호출은 cancel 시점이 응답 시간과 무관하므로 스스로 끝났을 때(성공/실패)만 기록한다.
+    private <T> Mono<T> timed(Mono<T> call, boolean recordOnCancel) {
+        return Mono.defer(() -> {
+            var start = System.nanoTime();
+            return call.doFinally(signal -> {
+                if (signal != SignalType.CANCEL || recordOnCancel) {
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+        });
+    }
+
+    private static Counter hedgeCounter(MeterRegistry meterRegistry, String client, String outcome) {
+        return Counter.builder("http.client.hedges")
+                .tag("client", client)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,58 @@
+package com.reactivespring.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * client 별 retry 허용량 (token bucket).
+ * 요청 1건마다 ratio 만큼 토큰이 쌓이고 retry 1회에 토큰 1개를 쓴다 -> retry 는 전체 요청의 ratio 비율을 넘지 못한다.
+ * 트래픽이 적을 때도 retry 가 가능하도록 초당 minRetriesPerSecond 만큼은 시간에 따라 채워진다.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double minRetriesPerSecond;
+    private final double capacity;
+    private final LongSupplier nanoTime;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public RetryBudget(double ratio, double minRetriesPerSecond, double capacity) {
+        this(ratio, minRetriesPerSecond, capacity, System::nanoTime);
+    }
+
+    RetryBudget(double ratio, double minRetriesPerSecond, double capacity, LongSupplier nanoTime) {
+        this.ratio = ratio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.capacity = Math.max(1, capacity);
+        this.nanoTime = nanoTime;
+        this.tokens = this.capacity;
+        this.lastRefillNanos = nanoTime.getAsLong();
+    }
+
+    public synchronized void onRequest() {
+        refill();
+        tokens = Math.min(capacity, tokens + ratio);
+    }
+
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        var now = nanoTime.getAsLong();
+        var elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+        lastRefillNanos = now;
+        tokens = Math.min(capacity, tokens + elapsedSeconds * minRetriesPerSecond);
+    }
+}
@@ -1,40 +1,72 @@
 package com.reactivespring;
 
 import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.cache.MovieInfoCache;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieStreamItem;
+import com.reactivespring.domain.MovieResult;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.contract.spec.internal.HttpStatus;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
-
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
 @AutoConfigureWebClient
+@AutoConfigureMetrics
 @AutoConfigureWireMock(port = 8084) // automaticaly spins up a httpserver in port 8084
 @TestPropertySource(properties = {
         "restClient.moviesInfoUrl=http://localhost:8084/v1/movieinfos",
         "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+        "cache.movie-info.invalidation-enabled=false",
 })
 public class MoviesControllerIntgTest {
 
     @Autowired
     WebTestClient webTestClient;
 
+    @Autowired
+    MovieInfoCache movieInfoCache;
+
+    @Autowired
+    CircuitBreakerRegistry circuitBreakerRegistry;
+
 
     @BeforeEach
     void setUp() {
         WireMock.reset();
+        movieInfoCache.invalidateAll();
+        // 이전 테스트의 실패가 circuit 상태에 영향을 주지 않도록 초기화
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(CircuitBreaker::reset);
     }
 
     /*
@@ -72,6 +104,113 @@ public class MoviesControllerIntgTest {
                 });
 
         // then
+        // reviews-service 의 JSON 목록은 page 단위로 잘리므로 review 전체는 NDJSON 으로 받는다
+        WireMock.verify(getRequestedFor(urlPathEqualTo("/v1/reviews"))
+                .withHeader("Accept", equalTo("application/x-ndjson")));
+    }
+
+    @Test
+    void retrieveMovieId_concurrent() {
+        // given
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(1000)
+                ));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")
+                        .withFixedDelay(1000)
+                ));
+
+        // when
+        var start = System.currentTimeMillis();
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert Objects.requireNonNull(movie).getReviewList().size() == 2;
+                });
+        var elapsed = System.currentTimeMillis() - start;
+
+        // then
+        // 두 조회가 동시에 실행되므로 각 지연(1s)의 합보다 빨라야 한다
+        assertTrue(elapsed < 2000, "elapsed : " + elapsed);
+    }
+
+    @Test
+    void retrieveMovieId_cached() {
+        // given
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")
+                ));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")
+                ));
+
+        // when
+        for (int i = 0; i < 2; i++) {
+            webTestClient.get()
+                    .uri("/v1/movies/{id}", movieId)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(Movie.class)
+                    .consumeWith(movieEntityExchangeResult -> {
+                        var movie = movieEntityExchangeResult.getResponseBody();
+                        assertEquals("Batman Begins", Objects.requireNonNull(movie).getMovieInfo().getName());
+                    });
+        }
+
+        // then
+        // 두 번째 요청은 캐시에서 응답, reviews 는 캐시 대상이 아님
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId)));
+        WireMock.verify(2, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
+
+    @Test
+    void retrieveMovieId_404_cached() {
+        // given
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.NOT_FOUND)
+                ));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")
+                ));
+
+        // when
+        for (int i = 0; i < 2; i++) {
+            webTestClient.get()
+                    .uri("/v1/movies/{id}", movieId)
+                    .exchange()
+                    .expectStatus().isNotFound();
+        }
+
+        // then
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId)));
     }
 
     @Test
@@ -133,6 +272,255 @@ public class MoviesControllerIntgTest {
         // then
     }
 
+    @Test
+    void retrieveMovieId_passthrough() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?passthrough=true", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert Objects.requireNonNull(movie).getReviewList().size() == 2;
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    assertEquals("Awesome Movie", movie.getReviewList().get(0).getComment());
+                });
+
+        // then
+        WireMock.verify(getRequestedFor(urlPathEqualTo("/v1/reviews"))
+                .withHeader("Accept", equalTo("application/json")));
+    }
+
+    @Test
+    void retrieveMovieId_passthrough_reviews_404() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.NOT_FOUND)
+                        .withBody("Review Not Found")));
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?passthrough=true", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.movieInfo.name").isEqualTo("Batman Begins")
+                .jsonPath("$.reviewList.length()").isEqualTo(0);
+
+        // then
+    }
+
+    @Test
+    void retrieveMovieId_passthrough_404() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?passthrough=true", movieId)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        // then
+    }
+
+    @Test
+    void retrieveMovieId_passthrough_404_releasesReviewsConnection() {
+        // given : movieInfo 는 바로 404, reviews 응답 헤더는 그 뒤에 도착한다
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withFixedDelay(20)
+                        .withBodyFile("reviews.json")));
+
+        // when : reviews connection pool(max-connections 100) 보다 많이 호출해도
+        for (var i = 0; i < 120; i++) {
+            webTestClient.get()
+                    .uri("/v1/movies/{id}?passthrough=true", movieId)
+                    .exchange()
+                    .expectStatus()
+                    .isNotFound();
+        }
+
+        // then : connection 이 반납되어 있어서 정상 요청이 pool 을 기다리지 않는다
+        movieInfoCache.invalidateAll();   // 404 도 캐싱되어 있다
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        webTestClient.get()
+                .uri("/v1/movies/{id}?passthrough=true", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.reviewList.length()").isEqualTo(2);
+    }
+
+    @Test
+    void streamMovieById() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        // when
+        var items = webTestClient.get()
+                .uri("/v1/movies/{id}/stream", movieId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(MovieStreamItem.class)
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        // movieInfo 가 먼저, 이후 review 가 한 줄씩
+        assertEquals(3, Objects.requireNonNull(items).size());
+        assertEquals(MovieStreamItem.MOVIE_INFO, items.get(0).getType());
+        assertEquals("Batman Begins", items.get(0).getMovieInfo().getName());
+        assertEquals(MovieStreamItem.REVIEW, items.get(1).getType());
+        assertEquals("Awesome Movie", items.get(1).getReview().getComment());
+        assertEquals("Excellent Movie", items.get(2).getReview().getComment());
+    }
+
+    @Test
+    void streamMovieById_sse() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        // when
+        var items = webTestClient.get()
+                .uri("/v1/movies/{id}/stream", movieId)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieStreamItem.class)
+                .getResponseBody();
+
+        // then
+        StepVerifier.create(items)
+                .assertNext(item -> assertEquals(MovieStreamItem.MOVIE_INFO, item.getType()))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void streamMovieById_longStreamDoesNotOpenReviewsCircuit() {
+        // given
+        // WireMock thread 가 느린 review 응답으로 모두 차 있으므로 movieInfo 는 캐시에서 읽는다
+        var movieId = "1";
+        movieInfoCache.put(new MovieInfo(movieId, "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")));
+
+        // review body 가 slow-call-duration-threshold(2s) 보다 오래 걸려서 내려온다
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")
+                        .withChunkedDribbleDelay(5, 2500)));
+
+        // when
+        // circuit 이 열리는 최소 호출 수(minimum-number-of-calls: 10) 만큼 stream 을 읽는다 (WireMock thread 수 때문에 4개씩)
+        var itemCounts = Flux.range(0, 10)
+                .flatMap(i -> Mono.fromCallable(() -> webTestClient.mutate()
+                                .responseTimeout(Duration.ofSeconds(20))
+                                .build()
+                                .get()
+                                .uri("/v1/movies/{id}/stream", movieId)
+                                .accept(MediaType.APPLICATION_NDJSON)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBodyList(MovieStreamItem.class)
+                                .returnResult()
+                                .getResponseBody()
+                                .size())
+                        .subscribeOn(Schedulers.boundedElastic()), 4)
+                .collectList()
+                .block();
+
+        // then
+        assertEquals(Collections.nCopies(10, 3), itemCounts);
+        // 응답 헤더까지만 측정하므로 body 를 읽는 시간은 slow call 로 기록되지 않는다
+        var circuitBreaker = circuitBreakerRegistry.circuitBreaker("reviews");
+        assertEquals(10, circuitBreaker.getMetrics().getNumberOfBufferedCalls());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void streamMovieById_404() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies/{id}/stream", movieId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        // then
+    }
+
     @Test
     void retrieveMovieId_5xx() {
         // given
@@ -192,4 +580,280 @@ public class MoviesControllerIntgTest {
         WireMock.verify(4, getRequestedFor(urlPathMatching("/v1/reviews*")));   // retry count
     }
 
+    @Test
+    void retrieveMovieId_poolMetrics() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk();
+
+        // then
+        // downstream 별로 분리된 pool 의 지표가 각각 등록된다
+        for (var pool : List.of("movies-info", "reviews")) {
+            for (var gauge : List.of("active.connections", "idle.connections", "pending.connections")) {
+                assertNotNull(Metrics.globalRegistry.find("reactor.netty.connection.provider." + gauge)
+                        .tag("name", pool)
+                        .gauge(), pool + " " + gauge);
+            }
+        }
+    }
+
+    @Test
+    void retrieveMovieId_prometheus() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk();
+
+        // when
+        var scrape = webTestClient.get()
+                .uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        // route / downstream 호출별 latency histogram, uri tag 에는 id 대신 template 이 들어간다
+        assertNotNull(scrape);
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket{application=\"movies-service\""), "server histogram");
+        assertTrue(scrape.contains("uri=\"/v1/movies/{id}\""), "server uri template");
+        assertTrue(scrape.contains("http_client_requests_seconds_bucket{"), "client histogram");
+        assertTrue(scrape.contains("uri=\"/v1/reviews?movieInfoId={ids}\""), "client uri template");
+        assertFalse(scrape.contains("movieInfoId=" + movieId), "client uri must not contain ids");
+        assertTrue(scrape.contains("netty_eventloop_pending_tasks"), "event loop metrics");
+        assertTrue(scrape.contains("reactor_netty_connection_provider_active_connections"), "pool metrics");
+    }
+
+    @Test
+    void retrieveMovieById_reviewsCircuitOpen() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        circuitBreakerRegistry.circuitBreaker("reviews").transitionToOpenState();
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = Objects.requireNonNull(movieEntityExchangeResult.getResponseBody());
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    // review 없이 응답
+                    assertEquals(0, movie.getReviewList().size());
+                });
+
+        // then
+        WireMock.verify(0, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
+
+    @Test
+    void retrieveMovieById_movieInfoCircuitOpen() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        circuitBreakerRegistry.circuitBreaker("movies-info").transitionToOpenState();
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isEqualTo(503);
+
+        // then
+        WireMock.verify(0, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId)));
+    }
+
+    @Test
+    void retrieveMovieById_deadline() {
+        // given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(2000)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        // when
+        var start = System.currentTimeMillis();
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .header("X-Deadline-Ms", "500")
+                .exchange()
+                .expectStatus().isEqualTo(504);
+
+        // then
+        // downstream 응답(2초)을 기다리지 않고 deadline 에 응답
+        var elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed < 1500, "elapsed " + elapsed);
+        // 남은 시간이 downstream 에 전달된다
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId))
+                .withHeader("X-Deadline-Ms", matching("[0-9]+")));
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/reviews"))
+                .withHeader("X-Deadline-Ms", matching("[0-9]+")));
+        // 응답이 돌아오는 시간(propagation-margin 50ms)만큼 줄여서 넘긴다
+        var forwarded = WireMock.findAll(getRequestedFor(urlPathEqualTo("/v1/reviews"))).get(0).getHeader("X-Deadline-Ms");
+        assertTrue(Long.parseLong(forwarded) <= 450, "forwarded " + forwarded);
+    }
+
+    @Test
+    void retrieveMoviesByIds() {
+        // given
+        stubFor(get(urlPathEqualTo("/v1/movieinfos"))
+                .withQueryParam("ids", equalTo("abc,def"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfos.json")
+                ));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews/bulk"))
+                .withQueryParam("movieInfoIds", equalTo("abc,def"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews-bulk.json")
+                ));
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies?ids={ids}", "abc,def")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MovieResult.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    var results = Objects.requireNonNull(listEntityExchangeResult.getResponseBody());
+                    assertEquals(2, results.size());
+
+                    var found = results.stream().filter(r -> r.getMovieId().equals("abc")).findFirst().orElseThrow();
+                    assertEquals("Batman Begins", found.getMovie().getMovieInfo().getName());
+                    assertEquals(2, found.getMovie().getReviewList().size());
+
+                    var notFound = results.stream().filter(r -> r.getMovieId().equals("def")).findFirst().orElseThrow();
+                    assertNull(notFound.getMovie());
+                    assertEquals(404, notFound.getStatusCode());
+                });
+
+        // then
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/movieinfos")));
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/reviews/bulk")));
+    }
+
+    @Test
+    void retrieveMoviesByIds_fields() {
+        // given
+        stubFor(get(urlPathEqualTo("/v1/movieinfos"))
+                .withQueryParam("ids", equalTo("abc"))
+                .withQueryParam("fields", equalTo("name"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[{\"movieInfoId\":\"abc\",\"name\":\"Batman Begins\"}]")
+                ));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews/bulk"))
+                .withQueryParam("movieInfoIds", equalTo("abc"))
+                .withQueryParam("fields", equalTo("rating"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"abc\":[{\"reviewId\":\"1\",\"rating\":9.0}]}")
+                ));
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies?ids={ids}&infoFields=name&reviewFields=rating", "abc")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .consumeWith(result -> {
+                    var body = Objects.requireNonNull(result.getResponseBody());
+                    assertTrue(body.contains("\"name\":\"Batman Begins\""), body);
+                    assertTrue(body.contains("\"rating\":9.0"), body);
+                    // projection 으로 빠진 필드는 응답에도 포함되지 않는다
+                    assertFalse(body.contains("\"cast\""), body);
+                    assertFalse(body.contains("\"comment\""), body);
+                });
+    }
+
+    @Test
+    void retrieveMoviesByIds_5xx() {
+        // given
+        stubFor(get(urlPathEqualTo("/v1/movieinfos"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .withBody("MovieInfo Service Unavailable")
+                ));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews/bulk"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews-bulk.json")
+                ));
+
+        // when
+        webTestClient.get()
+                .uri("/v1/movies?ids={ids}", "abc,def")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MovieResult.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    var results = Objects.requireNonNull(listEntityExchangeResult.getResponseBody());
+                    assertEquals(2, results.size());
+                    assertTrue(results.stream().allMatch(r -> r.getMovie() == null && r.getStatusCode() == 500));
+                });
+
+        // then
+    }
+
 }
\ No newline at end of file
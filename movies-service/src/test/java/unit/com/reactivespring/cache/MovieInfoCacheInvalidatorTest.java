@@ -0,0 +1,83 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.config.MovieInfoCacheProperties;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieInfoCacheInvalidatorTest {
+
+    MovieInfoCache movieInfoCache;
+    MovieInfoCacheInvalidator movieInfoCacheInvalidator;
+    AtomicInteger loadCount;
+
+    @BeforeEach
+    void setUp() {
+        var properties = new MovieInfoCacheProperties();
+        movieInfoCache = new MovieInfoCache(properties, new SimpleMeterRegistry());
+        movieInfoCacheInvalidator = new MovieInfoCacheInvalidator(WebClient.create(), movieInfoCache, properties);
+        loadCount = new AtomicInteger();
+    }
+
+    @Test
+    void handle_updated() {
+        // given
+        movieInfoCache.put(movieInfo("abc", "Batman Begins"));
+
+        // when
+        movieInfoCacheInvalidator.handle(MovieInfoEvent.updated(movieInfo("abc", "Batman Begins 2")));
+
+        // then
+        StepVerifier.create(movieInfoCache.get("abc", this::loader))
+                .assertNext(movieInfo -> assertEquals("Batman Begins 2", movieInfo.getName()))
+                .verifyComplete();
+        assertEquals(0, loadCount.get());
+    }
+
+    @Test
+    void handle_updated_notCached() {
+        // when
+        movieInfoCacheInvalidator.handle(MovieInfoEvent.updated(movieInfo("abc", "Batman Begins 2")));
+
+        // then
+        StepVerifier.create(movieInfoCache.get("abc", this::loader))
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void handle_deleted() {
+        // given
+        movieInfoCache.put(movieInfo("abc", "Batman Begins"));
+
+        // when
+        movieInfoCacheInvalidator.handle(MovieInfoEvent.deleted("abc"));
+
+        // then
+        StepVerifier.create(movieInfoCache.get("abc", this::loader))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, loadCount.get());
+    }
+
+    private Mono<MovieInfo> loader(String id) {
+        loadCount.incrementAndGet();
+        return Mono.just(movieInfo(id, "Batman Begins"));
+    }
+
+    private static MovieInfo movieInfo(String id, String name) {
+        return new MovieInfo(id, name, 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    }
+}
@@ -0,0 +1,162 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.config.MovieInfoCacheProperties;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.DeadlineExceededException;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.util.Deadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieInfoCacheTest {
+
+    MovieInfoCacheProperties properties;
+    SimpleMeterRegistry meterRegistry;
+    AtomicInteger loadCount;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MovieInfoCacheProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        loadCount = new AtomicInteger();
+    }
+
+    @Test
+    void get_coalescesConcurrentMisses() {
+        // given
+        var movieInfoCache = new MovieInfoCache(properties, meterRegistry);
+
+        // when
+        var movieInfos = Flux.range(0, 10)
+                .flatMap(i -> movieInfoCache.get("abc", id -> Mono.fromSupplier(() -> {
+                            loadCount.incrementAndGet();
+                            return movieInfo(id);
+                        })
+                        .delayElement(Duration.ofMillis(200))));
+
+        // then
+        StepVerifier.create(movieInfos)
+                .expectNextCount(10)
+                .verifyComplete();
+        assertEquals(1, loadCount.get());
+        assertEquals(9.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void get_loaderIgnoresFirstCallersDeadline() {
+        // given
+        var movieInfoCache = new MovieInfoCache(properties, meterRegistry);
+        var loader = (Function<String, Mono<MovieInfo>>) id -> Mono.fromSupplier(() -> {
+                    loadCount.incrementAndGet();
+                    return movieInfo(id);
+                })
+                .delayElement(Duration.ofMillis(200));
+
+        // when
+        // 첫 구독자는 deadline 이 짧아서 먼저 실패하고, 두 번째 구독자는 공유된 조회 결과를 받는다
+        var shortDeadline = movieInfoCache.get("abc", loader)
+                .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ofMillis(50))));
+        var longDeadline = movieInfoCache.get("abc", loader)
+                .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ofSeconds(5))));
+
+        // then
+        StepVerifier.create(shortDeadline)
+                .expectError(DeadlineExceededException.class)
+                .verify();
+        StepVerifier.create(longDeadline)
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void get_loadTimeout() {
+        // given
+        properties.setLoadTimeout(Duration.ofMillis(50));
+        var movieInfoCache = new MovieInfoCache(properties, meterRegistry);
+
+        // when
+        var result = movieInfoCache.get("abc", id -> Mono.<MovieInfo>never()
+                        .doOnSubscribe(subscription -> loadCount.incrementAndGet()))
+                .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ofSeconds(5))));
+
+        // then
+        StepVerifier.create(result)
+                .expectError(DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(1));
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void get_notFoundIsCached() {
+        // given
+        var movieInfoCache = new MovieInfoCache(properties, meterRegistry);
+
+        // when
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(movieInfoCache.get("abc", this::notFoundLoader))
+                    .expectError(MoviesInfoClientException.class)
+                    .verify();
+        }
+
+        // then
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void get_notFoundIsNotCached() {
+        // given
+        properties.setCacheNotFound(false);
+        var movieInfoCache = new MovieInfoCache(properties, meterRegistry);
+
+        // when
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(movieInfoCache.get("abc", this::notFoundLoader))
+                    .expectError(MoviesInfoClientException.class)
+                    .verify();
+        }
+
+        // then
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    void evict() {
+        // given
+        var movieInfoCache = new MovieInfoCache(properties, meterRegistry);
+        movieInfoCache.put(movieInfo("abc"));
+
+        // when
+        movieInfoCache.evict("abc");
+
+        // then
+        StepVerifier.create(movieInfoCache.get("abc", id -> {
+                    loadCount.incrementAndGet();
+                    return Mono.just(movieInfo(id));
+                }))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, loadCount.get());
+    }
+
+    private Mono<MovieInfo> notFoundLoader(String id) {
+        loadCount.incrementAndGet();
+        return Mono.error(new MoviesInfoClientException("There is no MovieInfo Available for the passed in Id : " + id, 404));
+    }
+
+    private static MovieInfo movieInfo(String id) {
+        return new MovieInfo(id, "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    }
+}
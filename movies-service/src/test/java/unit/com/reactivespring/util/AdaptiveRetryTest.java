@@ -0,0 +1,140 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.HttpClientProperties;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveRetryTest {
+
+    HttpClientProperties.RetrySettings settings;
+    SimpleMeterRegistry meterRegistry;
+    AtomicInteger attempts;
+
+    @BeforeEach
+    void setUp() {
+        settings = new HttpClientProperties.RetrySettings();
+        settings.setFirstBackoff(Duration.ofMillis(1));
+        settings.setMaxBackoff(Duration.ofMillis(5));
+        meterRegistry = new SimpleMeterRegistry();
+        attempts = new AtomicInteger();
+    }
+
+    @Test
+    void retry_untilMaxAttempts() {
+        // given
+        var retry = new AdaptiveRetry("movies-info", MoviesInfoServerException.class::isInstance, settings, meterRegistry);
+
+        // when
+        var result = failingCall(new MoviesInfoServerException("Server Exception in MoviesInfoService"))
+                .retryWhen(retry);
+
+        // then
+        StepVerifier.create(result)
+                .expectError(MoviesInfoServerException.class)
+                .verify();
+        assertEquals(4, attempts.get());
+        assertEquals(3.0, retryCount("retried"));
+        assertEquals(1.0, retryCount("exhausted"));
+        assertEquals(3, meterRegistry.get("http.client.retry.backoff").timer().count());
+    }
+
+    @Test
+    void retry_notRetryable() {
+        // given
+        var retry = new AdaptiveRetry("movies-info", MoviesInfoServerException.class::isInstance, settings, meterRegistry);
+
+        // when
+        var result = failingCall(new MoviesInfoClientException("There is no MovieInfo", 404))
+                .retryWhen(retry);
+
+        // then
+        StepVerifier.create(result)
+                .expectError(MoviesInfoClientException.class)
+                .verify();
+        assertEquals(1, attempts.get());
+        assertEquals(0.0, retryCount("retried"));
+    }
+
+    @Test
+    void retry_budgetExhausted() {
+        // given
+        // 토큰 2개, 요청/시간으로 채워지지 않는 budget
+        var budget = new RetryBudget(0, 0, 2);
+        var retry = new AdaptiveRetry("movies-info", MoviesInfoServerException.class::isInstance, settings, budget, meterRegistry);
+
+        // when
+        var result = failingCall(new MoviesInfoServerException("Server Exception in MoviesInfoService"))
+                .retryWhen(retry);
+
+        // then
+        StepVerifier.create(result)
+                .expectError(MoviesInfoServerException.class)
+                .verify();
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, retryCount("retried"));
+        assertEquals(1.0, retryCount("budget_exhausted"));
+    }
+
+    @Test
+    void backoff_fullJitter() {
+        // given
+        settings.setFirstBackoff(Duration.ofMillis(100));
+        settings.setMaxBackoff(Duration.ofMillis(300));
+        var retry = new AdaptiveRetry("movies-info", MoviesInfoServerException.class::isInstance, settings, meterRegistry);
+
+        // then
+        for (int i = 0; i < 100; i++) {
+            assertTrue(retry.backoff(0).toMillis() <= 100);
+            assertTrue(retry.backoff(1).toMillis() <= 200);
+            assertTrue(retry.backoff(5).toMillis() <= 300);
+        }
+    }
+
+    @Test
+    void retryBudget_ratioAndRefill() {
+        // given
+        var now = new AtomicLong();
+        var budget = new RetryBudget(0.5, 1, 10, now::get);
+        while (budget.tryAcquire()) {
+            // 초기 토큰 소진
+        }
+
+        // when
+        budget.onRequest();
+        budget.onRequest();
+
+        // then
+        // 요청 2건 -> 토큰 1개
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+
+        // 1초 지나면 minRetriesPerSecond 만큼 채워진다
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+    }
+
+    private Mono<String> failingCall(Throwable error) {
+        return Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(error);
+        });
+    }
+
+    private double retryCount(String outcome) {
+        return meterRegistry.get("http.client.retries").tag("outcome", outcome).counter().count();
+    }
+}
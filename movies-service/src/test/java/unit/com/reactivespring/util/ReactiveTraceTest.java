@@ -0,0 +1,78 @@
+package com.reactivespring.util;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactiveTraceTest {
+
+    Logger traceLogger;
+    ListAppender<ILoggingEvent> appender;
+
+    @BeforeEach
+    void setUp() {
+        traceLogger = (Logger) LoggerFactory.getLogger(ReactiveTrace.LOGGER_NAME);
+        appender = new ListAppender<>();
+        appender.start();
+        traceLogger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        traceLogger.detachAppender(appender);
+    }
+
+    @Test
+    void notSampled() {
+        // when
+        var flux = Flux.range(1, 3)
+                .transformDeferredContextual(ReactiveTrace.flux("GET /test", "abc"));
+
+        // then
+        StepVerifier.create(flux)
+                .expectNext(1, 2, 3)
+                .verifyComplete();
+        assertTrue(appender.list.isEmpty());
+    }
+
+    @Test
+    void sampled_flux() {
+        // when
+        var flux = Flux.range(1, 3)
+                .transformDeferredContextual(ReactiveTrace.flux("GET /test", "abc"))
+                .contextWrite(ReactiveTrace::sampled);
+
+        // then
+        StepVerifier.create(flux)
+                .expectNext(1, 2, 3)
+                .verifyComplete();
+        assertEquals(1, appender.list.size());
+        var message = appender.list.get(0).getFormattedMessage();
+        assertTrue(message.startsWith("route=GET /test id=abc outcome=success items=3 "), message);
+    }
+
+    @Test
+    void sampled_monoError() {
+        // when
+        var mono = Mono.error(new IllegalStateException("boom"))
+                .transformDeferredContextual(ReactiveTrace.mono("GET /test/{id}", "abc"))
+                .contextWrite(ReactiveTrace::sampled);
+
+        // then
+        StepVerifier.create(mono)
+                .verifyError(IllegalStateException.class);
+        assertEquals(1, appender.list.size());
+        var message = appender.list.get(0).getFormattedMessage();
+        assertTrue(message.contains("outcome=error items=0 firstItemMs=-1"), message);
+    }
+}
@@ -0,0 +1,169 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.HttpClientProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestHedgerTest {
+
+    HttpClientProperties.HedgeSettings settings;
+    SimpleMeterRegistry meterRegistry;
+    AtomicInteger calls;
+    AtomicBoolean primaryCancelled;
+
+    @BeforeEach
+    void setUp() {
+        settings = new HttpClientProperties.HedgeSettings();
+        settings.setEnabled(true);
+        settings.setInitialDelay(Duration.ofMillis(50));
+        meterRegistry = new SimpleMeterRegistry();
+        calls = new AtomicInteger();
+        primaryCancelled = new AtomicBoolean();
+    }
+
+    @Test
+    void hedge_slowPrimary() {
+        // given
+        var hedger = new RequestHedger("movies-info", settings, meterRegistry);
+
+        // when
+        var result = hedger.hedge(this::slowThenFast);
+
+        // then
+        StepVerifier.create(result)
+                .expectNext("hedge")
+                .verifyComplete();
+        assertEquals(2, calls.get());
+        assertTrue(primaryCancelled.get());
+        assertEquals(1.0, hedgeCount("fired"));
+        assertEquals(1.0, hedgeCount("won"));
+    }
+
+    @Test
+    void hedge_slowPrimary_recordsCancelledPrimaryLatency() {
+        // given
+        var hedger = new RequestHedger("movies-info", settings, meterRegistry);
+        var latency = meterRegistry.get("http.client.hedge.latency").timer();
+
+        // when
+        StepVerifier.create(hedger.hedge(this::slowThenFast))
+                .expectNext("hedge")
+                .verifyComplete();
+
+        // then
+        // cancel 된 첫 호출도 hedge 지연(50ms) 이상으로 기록된다
+        assertEquals(2, latency.count());
+        assertTrue(latency.max(TimeUnit.MILLISECONDS) >= 50, "max " + latency.max(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void hedge_failedPrimary_recordsLatency() {
+        // given
+        var hedger = new RequestHedger("movies-info", settings, meterRegistry);
+        var latency = meterRegistry.get("http.client.hedge.latency").timer();
+
+        // when
+        StepVerifier.create(hedger.hedge(() -> Mono.<String>error(new IllegalStateException("boom"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        // then
+        assertEquals(1, latency.count());
+    }
+
+    @Test
+    void hedge_fastPrimary() {
+        // given
+        var hedger = new RequestHedger("movies-info", settings, meterRegistry);
+
+        // when
+        var result = hedger.hedge(() -> Mono.fromSupplier(() -> "primary" + calls.incrementAndGet()));
+
+        // then
+        StepVerifier.create(result)
+                .expectNext("primary1")
+                .verifyComplete();
+        assertEquals(1, calls.get());
+        assertEquals(0.0, hedgeCount("fired"));
+    }
+
+    @Test
+    void hedge_budgetExhausted() {
+        // given
+        settings.setMaxHedgeRatio(0);
+        settings.setMinHedgesPerSecond(0);
+        settings.setBudgetCapacity(1);
+        var hedger = new RequestHedger("movies-info", settings, meterRegistry);
+
+        // when
+        StepVerifier.create(hedger.hedge(this::slowThenFast))
+                .expectNext("hedge")
+                .verifyComplete();
+        calls.set(0);
+
+        // then
+        // 토큰을 다 썼으므로 두 번째 요청은 hedge 없이 느린 첫 호출을 기다린다
+        StepVerifier.create(hedger.hedge(this::slowThenFast))
+                .expectNext("primary")
+                .verifyComplete();
+        assertEquals(1, calls.get());
+        assertEquals(1.0, hedgeCount("budget_exhausted"));
+    }
+
+    @Test
+    void hedge_disabled() {
+        // given
+        settings.setEnabled(false);
+        var hedger = new RequestHedger("movies-info", settings, meterRegistry);
+
+        // when
+        StepVerifier.create(hedger.hedge(this::slowThenFast))
+                .expectNext("primary")
+                .verifyComplete();
+
+        // then
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void hedgeDelay_percentile() {
+        // given
+        settings.setMinSamples(10);
+        var hedger = new RequestHedger("movies-info", settings, meterRegistry);
+        var latency = meterRegistry.get("http.client.hedge.latency").timer();
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            latency.record(Duration.ofMillis(100));
+        }
+
+        // then
+        var delay = hedger.hedgeDelay().toMillis();
+        assertTrue(delay >= 90 && delay <= 110, "delay " + delay);
+    }
+
+    // 첫 호출은 느리고 두 번째 호출은 바로 응답
+    private Mono<String> slowThenFast() {
+        if (calls.incrementAndGet() == 1) {
+            return Mono.delay(Duration.ofMillis(500))
+                    .map(tick -> "primary")
+                    .doOnCancel(() -> primaryCancelled.set(true));
+        }
+        return Mono.just("hedge");
+    }
+
+    private double hedgeCount(String outcome) {
+        return meterRegistry.get("http.client.hedges").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,86 @@
+package kr.rojae.reactive.app.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// FluxAndMonoGeneratorService 의 concat / merge / mergeSequential / zip / transform 비교 (지연 없는 동기 source)
+// transform 은 조립 시점에만 동작하므로 같은 operator 를 직접 연결한 inlineChain 과 차이가 없어야 한다
+// prefetch 는 merge / mergeSequential / zip 만 받는다 (concat / transform / inlineChain 은 Prefetch state 를 쓰지 않으므로 prefetch 조합마다 반복 측정되지 않는다)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CombineBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Sources {
+
+        @Param({"100", "10000"})
+        int elements;
+
+        Flux<Integer> first;
+        Flux<Integer> second;
+        Function<Flux<Integer>, Flux<Integer>> filterMap;
+
+        @Setup
+        public void setUp() {
+            first = Flux.range(0, elements);
+            second = Flux.range(elements, elements);
+            filterMap = flux -> flux.map(i -> i * 2)
+                    .filter(i -> i % 3 != 0);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Prefetch {
+
+        @Param({"1", "32", "256"})
+        int prefetch;
+    }
+
+    @Benchmark
+    public void concat(Sources sources, Blackhole bh) {
+        Flux.concat(sources.first, sources.second)
+                .subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void merge(Sources sources, Prefetch prefetch, Blackhole bh) {
+        Flux.merge(prefetch.prefetch, sources.first, sources.second)
+                .subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void mergeSequential(Sources sources, Prefetch prefetch, Blackhole bh) {
+        Flux.mergeSequential(prefetch.prefetch, sources.first, sources.second)
+                .subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void zip(Sources sources, Prefetch prefetch, Blackhole bh) {
+        sources.first.zipWith(sources.second, prefetch.prefetch, Integer::sum)
+                .subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void transform(Sources sources, Blackhole bh) {
+        sources.first.transform(sources.filterMap)
+                .subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void inlineChain(Sources sources, Blackhole bh) {
+        sources.first.map(i -> i * 2)
+                .filter(i -> i % 3 != 0)
+                .subscribe(bh::consume);
+    }
+}
@@ -0,0 +1,64 @@
+package kr.rojae.reactive.app.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+// FluxAndMonoGeneratorService 의 flatMap / concatMap / flatMapSequential 비교 (지연 없는 동기 source)
+// 원소 하나를 splitString 처럼 INNER 개로 펼친다
+// Throughput : 초당 파이프라인 완료 수, SampleTime : 파이프라인 1회 latency 분포 (p50, p99 ...)
+// concatMap 은 concurrency 와 무관하다 (한 번에 inner 하나만 구독)
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FlatMapBenchmark {
+
+    static final int INNER = 5;
+
+    @Param({"100", "10000"})
+    int elements;
+
+    @Param({"1", "16", "256"})
+    int concurrency;
+
+    @Param({"1", "32"})
+    int prefetch;
+
+    Flux<Integer> source;
+
+    @Setup
+    public void setUp() {
+        source = Flux.range(0, elements);
+    }
+
+    @Benchmark
+    public void flatMap(Blackhole bh) {
+        source.flatMap(FlatMapBenchmark::split, concurrency, prefetch)
+                .subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void concatMap(Blackhole bh) {
+        source.concatMap(FlatMapBenchmark::split, prefetch)
+                .subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void flatMapSequential(Blackhole bh) {
+        source.flatMapSequential(FlatMapBenchmark::split, concurrency, prefetch)
+                .subscribe(bh::consume);
+    }
+
+    static Flux<Integer> split(int i) {
+        return Flux.range(i * INNER, INNER);
+    }
+}
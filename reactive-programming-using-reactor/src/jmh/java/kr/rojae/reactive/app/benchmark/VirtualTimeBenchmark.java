@@ -0,0 +1,115 @@
+package kr.rojae.reactive.app.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// FluxAndMonoGeneratorService 의 지연(delayElements) 이 있는 예제를 VirtualTimeScheduler 로 실행한다
+// 서비스의 new Random().nextInt(1000) 대신 원소 번호로 정해지는 지연을 써서 매번 같은 결과가 나온다
+// - 측정 시간 : 지연을 실제로 기다리지 않으므로 operator + 스케줄링 overhead
+// - virtualMillis / pipelines : 파이프라인 완료까지 걸리는 (가상) 시간 평균 (예 : concatMap 은 지연이 누적된다)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VirtualTimeBenchmark {
+
+    static final int INNER = 5;
+    static final long MAX_DELAY_MS = 1000;
+    static final Duration RUN_UNTIL = Duration.ofDays(365);
+
+    @Param({"10", "100"})
+    int elements;
+
+    @Param({"1", "4", "16"})
+    int concurrency;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class VirtualLatency {
+        public long virtualMillis;
+        public long pipelines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            virtualMillis = 0;
+            pipelines = 0;
+        }
+    }
+
+    @Benchmark
+    public void flatMap(Blackhole bh, VirtualLatency latency) {
+        run(bh, latency, scheduler -> Flux.range(0, elements)
+                .flatMap(i -> split(i, scheduler), concurrency));
+    }
+
+    @Benchmark
+    public void concatMap(Blackhole bh, VirtualLatency latency) {
+        run(bh, latency, scheduler -> Flux.range(0, elements)
+                .concatMap(i -> split(i, scheduler)));
+    }
+
+    @Benchmark
+    public void flatMapSequential(Blackhole bh, VirtualLatency latency) {
+        run(bh, latency, scheduler -> Flux.range(0, elements)
+                .flatMapSequential(i -> split(i, scheduler), concurrency));
+    }
+
+    // explore_merge 처럼 100ms / 125ms 간격의 두 Flux
+    @Benchmark
+    public void merge(Blackhole bh, VirtualLatency latency) {
+        run(bh, latency, scheduler -> Flux.merge(
+                Flux.range(0, elements).delayElements(Duration.ofMillis(100), scheduler),
+                Flux.range(elements, elements).delayElements(Duration.ofMillis(125), scheduler)));
+    }
+
+    @Benchmark
+    public void mergeSequential(Blackhole bh, VirtualLatency latency) {
+        run(bh, latency, scheduler -> Flux.mergeSequential(
+                Flux.range(0, elements).delayElements(Duration.ofMillis(100), scheduler),
+                Flux.range(elements, elements).delayElements(Duration.ofMillis(125), scheduler)));
+    }
+
+    @Benchmark
+    public void zip(Blackhole bh, VirtualLatency latency) {
+        run(bh, latency, scheduler -> Flux.zip(
+                        Flux.range(0, elements).delayElements(Duration.ofMillis(100), scheduler),
+                        Flux.range(elements, elements).delayElements(Duration.ofMillis(125), scheduler))
+                .map(t2 -> t2.getT1() + t2.getT2()));
+    }
+
+    private static void run(Blackhole bh, VirtualLatency latency,
+                            Function<VirtualTimeScheduler, Flux<Integer>> pipeline) {
+        var scheduler = VirtualTimeScheduler.create();
+        var completedAt = new long[]{-1};
+
+        pipeline.apply(scheduler)
+                .subscribe(bh::consume, bh::consume, () -> completedAt[0] = scheduler.now(TimeUnit.MILLISECONDS));
+        // 예약된 작업을 시간 순서대로 모두 실행한다 (실제로 기다리지 않음)
+        scheduler.advanceTimeBy(RUN_UNTIL);
+        scheduler.dispose();
+
+        latency.virtualMillis += completedAt[0];
+        latency.pipelines++;
+    }
+
+    // splitString_withDelay 와 같은 모양. 지연은 0 ~ MAX_DELAY_MS 사이에서 원소 번호로 정해진다
+    static Flux<Integer> split(int i, VirtualTimeScheduler scheduler) {
+        var delay = Duration.ofMillis((i * 7919L) % MAX_DELAY_MS);
+        return Flux.range(i * INNER, INNER)
+                .delayElements(delay, scheduler);
+    }
+}